@@ -0,0 +1,99 @@
+package tictactoe;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BatchSolver} throughput in positions per second, solving every position reachable on a 3x3 board
+ * from an empty transposition table.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class BatchSolverBenchmark {
+
+    /**
+     * Number of positions reachable from an empty 3x3 board, including finished games.
+     */
+    private static final int POSITIONS = 5478;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private String[] positions;
+    private BatchSolver solver;
+
+    @Setup
+    public void setUp() {
+        positions = reachablePositions();
+        if (positions.length != POSITIONS) {
+            throw new IllegalStateException("Expected "+POSITIONS+" positions, found "+positions.length);
+        }
+        solver = new BatchSolver(Minimax.UNLIMITED, parallelism);
+    }
+
+    @TearDown
+    public void tearDown() {
+        solver.close();
+    }
+
+    /**
+     * Start every batch cold, so later invocations do not just read back the first one's results.
+     */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        Minimax.clearTable();
+    }
+
+    /**
+     * List every position reachable from an empty board, in breadth-first order.
+     */
+    private static String[] reachablePositions() {
+        List<String> found = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>(List.of("_".repeat(Grid.TOTAL_SYMBOLS)));
+        while (!queue.isEmpty()) {
+            String symbols = queue.poll();
+            if (!seen.add(symbols)) continue;
+            found.add(symbols);
+            Grid grid = new Grid(symbols);
+            if (grid.getState() != Grid.State.UNFINISHED) continue;
+            char piece = grid.isXTurn() ? 'X' : 'O';
+            for (int i = 0; i < symbols.length(); i++) {
+                if (symbols.charAt(i) == '_') {
+                    queue.add(symbols.substring(0, i)+piece+symbols.substring(i + 1));
+                }
+            }
+        }
+        return found.toArray(new String[0]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(POSITIONS)
+    public BatchSolver.Result[] solve() {
+        return solver.solve(positions);
+    }
+}
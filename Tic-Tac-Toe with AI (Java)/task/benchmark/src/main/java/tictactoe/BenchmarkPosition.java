@@ -0,0 +1,27 @@
+package tictactoe;
+
+/**
+ * Fixed boards the benchmarks are run from, at the start, middle and end of a game.
+ * Symbols are read left-to-right, top-to-bottom, with '_' for an empty cell.
+ */
+public enum BenchmarkPosition {
+    EMPTY_3X3("_________"),
+    MID_GAME_3X3("XO_XO____"),
+    NEAR_TERMINAL_3X3("XOXOXO___"),
+    EMPTY_4X4("________________"),
+    MID_GAME_4X4("X____O__X__O____"),
+    NEAR_TERMINAL_4X4("XOXO_OX_XOX_O___");
+
+    private final String symbols;
+
+    BenchmarkPosition(String symbols) {
+        this.symbols = symbols;
+    }
+
+    /**
+     * Create a new board holding this position, with the default win length for its size.
+     */
+    public Grid toGrid() {
+        return new Grid(symbols);
+    }
+}
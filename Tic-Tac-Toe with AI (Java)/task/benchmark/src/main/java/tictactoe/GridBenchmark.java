@@ -0,0 +1,55 @@
+package tictactoe;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the full-board scans of {@link Grid}.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class GridBenchmark {
+
+    @Param
+    public BenchmarkPosition position;
+
+    private Grid grid;
+    private final MoveList moves = new MoveList();
+
+    @Setup
+    public void setUp() {
+        grid = position.toGrid();
+    }
+
+    @Benchmark
+    public Grid.State evaluateState() {
+        grid.evaluateState();
+        return grid.getState();
+    }
+
+    @Benchmark
+    public List<int[]> getEmptyCells() {
+        return grid.getEmptyCells();
+    }
+
+    @Benchmark
+    public MoveList getEmptyCellIndexes() {
+        return grid.getEmptyCells(moves);
+    }
+}
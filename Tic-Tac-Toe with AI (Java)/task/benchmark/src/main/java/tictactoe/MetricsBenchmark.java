@@ -0,0 +1,53 @@
+package tictactoe;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the cost {@link StrategyMetrics} adds to every move, from one thread and from several threads
+ * recording into the same strategy's metrics at once.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Benchmark)
+public class MetricsBenchmark {
+
+    private final StrategyMetrics metrics = StrategyMetrics.forStrategy("benchmark");
+
+    /**
+     * Read the clock twice without recording, the part of {@link #recordMove()} any timing would cost.
+     */
+    @Benchmark
+    public long clockOnly() {
+        long start = System.nanoTime();
+        return System.nanoTime() - start + (start & 0xFFFF);
+    }
+
+    /**
+     * Time a move the way {@link Strategy} does, recording a varying duration.
+     */
+    @Benchmark
+    public void recordMove() {
+        long start = System.nanoTime();
+        metrics.recordMove(System.nanoTime() - start + (start & 0xFFFF));
+    }
+
+    @Benchmark
+    @Threads(4)
+    public void recordMoveContended() {
+        recordMove();
+    }
+}
@@ -0,0 +1,79 @@
+package tictactoe;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures a full {@link Minimax} search of each position from an empty transposition table,
+ * with and without the move ordering heuristics and with several threads searching the root's children.
+ * The number of nodes searched is reported as a secondary result.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MinimaxBenchmark {
+
+    @Param
+    public BenchmarkPosition position;
+
+    @Param({"true", "false"})
+    public boolean moveOrdering;
+
+    @Param({"1", "4"})
+    public int parallelism;
+
+    private Grid grid;
+
+    /**
+     * Nodes searched, summed over every invocation of an iteration.
+     */
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    @State(Scope.Thread)
+    public static class Nodes {
+        public long nodes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            nodes = 0;
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        grid = position.toGrid();
+    }
+
+    /**
+     * Start every search cold, so later invocations do not just read back the first one's results.
+     */
+    @Setup(Level.Invocation)
+    public void clearTable() {
+        Minimax.clearTable();
+    }
+
+    @Benchmark
+    public int getBestCell(Nodes nodes) {
+        Minimax minimax = new Minimax(grid, Minimax.Evaluator.OPEN_LINES,
+                Minimax.UNLIMITED, Minimax.UNLIMITED, parallelism);
+        minimax.setMoveOrdering(moveOrdering);
+        int move = minimax.getBestCell();
+        nodes.nodes += minimax.getNodeCount();
+        return move;
+    }
+}
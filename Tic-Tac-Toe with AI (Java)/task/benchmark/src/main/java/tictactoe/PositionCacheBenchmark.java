@@ -0,0 +1,58 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the hard player's warm-restart path, looking a searched position up in a {@link PositionCache} file.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class PositionCacheBenchmark {
+
+    @Param({"MID_GAME_3X3", "MID_GAME_4X4", "NEAR_TERMINAL_4X4"})
+    public BenchmarkPosition position;
+
+    private Path file;
+    private PositionCache cache;
+    private Grid grid;
+
+    @Setup
+    public void setUp() throws IOException {
+        file = Files.createTempFile("tictactoe", ".cache");
+        Files.delete(file); // let the cache lay out a new file
+        cache = PositionCache.open(file, PositionCache.DEFAULT_SLOTS);
+        grid = position.toGrid();
+        cache.store(grid, new Minimax(grid, Minimax.Evaluator.OPEN_LINES, 1000, Minimax.UNLIMITED));
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        cache.close();
+        Files.deleteIfExists(file);
+    }
+
+    @Benchmark
+    public int getBestCell() {
+        return cache.getBestCell(grid);
+    }
+}
@@ -0,0 +1,80 @@
+package tictactoe;
+
+import java.util.SplittableRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures each computer player choosing a move, as called by {@link Game#play(Menu.Player, Menu.Player)}.
+ * The hard player keeps its usual time limit, opening book and shared transposition table, but its cache of recent
+ * results is cleared before each move so every move is searched, and the Monte Carlo player keeps its usual time
+ * limit.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class StrategyBenchmark {
+
+    @Param
+    public BenchmarkPosition position;
+
+    private Position snapshot;
+    private Piece toPlace;
+    private SplittableRandom random;
+
+    /**
+     * Clears the hard player's recent results before each move, as a cache hit would skip the search measured.
+     */
+    @State(Scope.Thread)
+    public static class ColdResults {
+
+        @Setup(Level.Invocation)
+        public void clear() {
+            SearchCache cache = Game.HardMove.getSearchCache();
+            if (cache != null) cache.clear();
+        }
+    }
+
+    @Setup
+    public void setUp() {
+        snapshot = new Position(position.toGrid());
+        toPlace = snapshot.nextPiece().orElseThrow();
+        random = new SplittableRandom(0);
+        OpeningBook.getInstance(); // loaded once at startup by Main
+    }
+
+    @Benchmark
+    public int easyMove() {
+        return Game.getStrategy(Menu.Player.EASY).execute(snapshot, toPlace, random, Strategy.DEFAULT_PARALLELISM);
+    }
+
+    @Benchmark
+    public int mediumMove() {
+        return Game.getStrategy(Menu.Player.MEDIUM).execute(snapshot, toPlace, random, Strategy.DEFAULT_PARALLELISM);
+    }
+
+    @Benchmark
+    public int hardMove(ColdResults coldResults) {
+        return Game.getStrategy(Menu.Player.HARD).execute(snapshot, toPlace, random, Strategy.DEFAULT_PARALLELISM);
+    }
+
+    @Benchmark
+    public int mctsMove() {
+        return Game.getStrategy(Menu.Player.MCTS).execute(snapshot, toPlace, random, Strategy.DEFAULT_PARALLELISM);
+    }
+}
@@ -0,0 +1,76 @@
+package tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks {@link BatchSolver} against the {@link OpeningBook} for every reachable 3x3 position.
+ */
+class BatchSolverTest {
+
+    /**
+     * Positions that are not valid boards: not square, an invalid symbol, or pieces not placed in turn.
+     */
+    private static final String[] MALFORMED = {"", "XO", "XO_XO_XOZ", "XXXXXXXXX", "O________", "XXX______"};
+
+    @Test
+    void solvesEveryReachablePosition() {
+        List<String> positions = OpeningBookTest.reachablePositions();
+        assertEquals(5478, positions.size());
+        OpeningBook book = OpeningBook.getInstance();
+        BatchSolver.Result[] results;
+        try (BatchSolver solver = new BatchSolver(Minimax.UNLIMITED, 2)) {
+            results = solver.solve(positions.toArray(new String[0]));
+            assertEquals(positions.size(), solver.getPositionCount());
+            // rotations and reflections of a position are only searched once
+            assertEquals(765, solver.getSearchCount());
+        }
+        assertEquals(positions.size(), results.length);
+        for (int i = 0; i < results.length; i++) {
+            String symbols = positions.get(i);
+            BatchSolver.Result result = results[i];
+            assertEquals(symbols, result.getPosition());
+            assertTrue(result.isValid(), symbols);
+            Grid grid = new Grid(symbols);
+            Grid.State outcome = book.getOutcome(grid);
+            assertEquals(outcome, OpeningBookTest.outcome(result.getValue()), symbols);
+            int[] move = result.getMove();
+            if (grid.getState() != Grid.State.UNFINISHED) {
+                assertNull(move, symbols);
+                continue;
+            }
+            assertNotNull(move, symbols);
+            int cell = grid.toIndex(move[0], move[1]);
+            assertEquals('_', symbols.charAt(cell), symbols+" move "+cell);
+            Grid child = new Grid(grid);
+            child.play(cell, grid.nextPiece().orElseThrow());
+            assertEquals(outcome, book.getOutcome(child), symbols+" move "+cell);
+        }
+    }
+
+    @Test
+    void marksMalformedPositionsInvalid() {
+        List<String> positions = new ArrayList<>(List.of(MALFORMED));
+        positions.add("XO_______");
+        try (BatchSolver solver = new BatchSolver(Minimax.UNLIMITED, 1)) {
+            BatchSolver.Result[] results = solver.solve(positions.toArray(new String[0]));
+            for (int i = 0; i < MALFORMED.length; i++) {
+                assertFalse(results[i].isValid(), MALFORMED[i]);
+                assertNull(results[i].getMove(), MALFORMED[i]);
+                assertEquals(MALFORMED[i]+" INVALID", results[i].toString());
+            }
+            // the rest of the batch is still solved
+            BatchSolver.Result last = results[MALFORMED.length];
+            assertTrue(last.isValid());
+            assertNotNull(last.getMove());
+        }
+    }
+}
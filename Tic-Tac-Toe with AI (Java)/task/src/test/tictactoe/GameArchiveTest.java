@@ -0,0 +1,136 @@
+package tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import tictactoe.Menu.Player;
+
+/**
+ * Checks {@link GameArchive} replays the games it records and recovers from a record cut short.
+ */
+class GameArchiveTest {
+
+    /**
+     * Board sizes with moves packed as nibbles (up to 4), bytes (up to 16, with a two byte move count at 16)
+     * and shorts.
+     */
+    private static final int[] SIZES = {1, 2, 3, 4, 5, 15, 16, 17, 20};
+    private static final Player[] PLAYERS = Player.values();
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Play random moves until a game is over.
+     */
+    private static Game randomGame(int size, int winLength, SplittableRandom random) {
+        Game game = new Game(size, winLength, true, random);
+        List<Integer> cells = new ArrayList<>();
+        for (int i = 0; i < size * size; i++) {
+            cells.add(i);
+        }
+        while (game.getState() == Grid.State.UNFINISHED) {
+            game.move(cells.remove(random.nextInt(cells.size())));
+        }
+        return game;
+    }
+
+    /**
+     * Read the next game of an archive and check it matches one that was appended.
+     */
+    private static void assertNextGame(GameArchive.Reader reader, Game game, Player playerX, Player playerO)
+            throws IOException {
+        assertTrue(reader.next());
+        assertEquals(game.getSize(), reader.getSize());
+        assertEquals(game.getWinLength(), reader.getWinLength());
+        assertEquals(playerX, reader.getPlayerX());
+        assertEquals(playerO, reader.getPlayerO());
+        assertEquals(game.getMoveCount(), reader.getMoveCount());
+        for (int i = 0; i < game.getMoveCount(); i++) {
+            assertEquals(game.getMove(i), reader.getMove(i), "move "+i);
+        }
+        assertEquals(game.getState(), reader.replay());
+    }
+
+    @Test
+    void replaysEveryBoardSize() throws IOException {
+        Path file = directory.resolve("games");
+        SplittableRandom random = new SplittableRandom(1);
+        List<Game> games = new ArrayList<>();
+        try (GameArchive.Writer writer = new GameArchive.Writer(file)) {
+            for (int size : SIZES) {
+                // long games filling the board and short ones, with both odd and even numbers of moves
+                for (int winLength : new int[]{size, Math.min(size, 3)}) {
+                    for (int i = 0; i < 4; i++) {
+                        Game game = randomGame(size, winLength, random);
+                        writer.append(game, PLAYERS[games.size() % PLAYERS.length],
+                                PLAYERS[games.size() / PLAYERS.length % PLAYERS.length]);
+                        games.add(game);
+                    }
+                }
+            }
+            assertEquals(games.size(), writer.getGameCount());
+        }
+        try (GameArchive.Reader reader = new GameArchive.Reader(file)) {
+            for (int i = 0; i < games.size(); i++) {
+                assertNextGame(reader, games.get(i), PLAYERS[i % PLAYERS.length],
+                        PLAYERS[i / PLAYERS.length % PLAYERS.length]);
+            }
+            assertFalse(reader.next());
+            assertEquals(Files.size(file), reader.getOffset());
+        }
+    }
+
+    @Test
+    void removesATornLastRecord() throws IOException {
+        SplittableRandom random = new SplittableRandom(2);
+        for (int size : new int[]{3, 17}) {
+            Game first = randomGame(size, size, random);
+            Game last = randomGame(size, size, random);
+            Game next = randomGame(size, size, random);
+            Path file = directory.resolve("games"+size);
+            long whole;
+            try (GameArchive.Writer writer = new GameArchive.Writer(file)) {
+                writer.append(first, Player.HARD, Player.EASY);
+                writer.flush();
+                whole = Files.size(file);
+                writer.append(last, Player.MCTS, Player.USER);
+            }
+            // cut the last record short at every possible length, as a crash part way through writing it would
+            for (long length = whole; length < Files.size(file); length++) {
+                Path torn = directory.resolve("torn");
+                Files.copy(file, torn);
+                try (FileChannel channel = FileChannel.open(torn, StandardOpenOption.WRITE)) {
+                    channel.truncate(length);
+                }
+                try (GameArchive.Reader reader = new GameArchive.Reader(torn)) {
+                    assertNextGame(reader, first, Player.HARD, Player.EASY);
+                    assertFalse(reader.next(), "cut to "+length);
+                    assertEquals(whole, reader.getOffset());
+                }
+                try (GameArchive.Writer writer = new GameArchive.Writer(torn)) {
+                    writer.append(next, Player.MEDIUM, Player.HARD);
+                }
+                try (GameArchive.Reader reader = new GameArchive.Reader(torn)) {
+                    assertNextGame(reader, first, Player.HARD, Player.EASY);
+                    assertNextGame(reader, next, Player.MEDIUM, Player.HARD);
+                    assertFalse(reader.next(), "cut to "+length);
+                }
+                Files.delete(torn);
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.Timeout;
+
+/**
+ * Plays {@link GameServer} games over localhost.
+ */
+@Timeout(30)
+class GameServerTest {
+
+    /**
+     * A client connection sending one command per line.
+     */
+    private static final class Client implements AutoCloseable {
+        private final Socket socket;
+        private final BufferedReader in;
+        private final PrintWriter out;
+
+        Client(GameServer server) throws IOException {
+            socket = new Socket(InetAddress.getLoopbackAddress(), server.getPort());
+            in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+            out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true);
+        }
+
+        /**
+         * Send a command and wait for its reply.
+         * @return reply, null if the server closed the connection
+         */
+        String send(String command) throws IOException {
+            out.println(command);
+            return in.readLine();
+        }
+
+        @Override
+        public void close() throws IOException {
+            socket.close();
+        }
+    }
+
+    /**
+     * Wait for the server to count a number of open connections.
+     */
+    private static void awaitConnections(GameServer server, int count) throws InterruptedException {
+        while (server.getConnectionCount() != count) {
+            Thread.sleep(10);
+        }
+    }
+
+    @Test
+    void playsAGame() throws IOException {
+        try (GameServer server = new GameServer(0); Client client = new Client(server)) {
+            assertEquals("OK _________ UNFINISHED", client.send("start user hard"));
+            String reply = client.send("move 2 2");
+            assertTrue(reply.matches("OK ____X____ UNFINISHED".replace("____X____", "[_O]{4}X[_O]{4}")), reply);
+            assertEquals("ERROR This cell is occupied! Choose another one!", client.send("move 2 2"));
+            assertEquals("ERROR Board size must be from 1 to "+GameServer.MAX_SIZE, client.send("start user user 33"));
+            assertEquals("ERROR Win length must be from 1 to 4", client.send("start user user 4 5"));
+            assertEquals("ERROR Command is too long", client.send("state "+"x".repeat(1000)));
+            assertEquals("BYE", client.send("quit"));
+        }
+    }
+
+    @Test
+    void closesOpenSessions() throws IOException, InterruptedException {
+        GameServer server = new GameServer(0);
+        try (Client client = new Client(server)) {
+            assertEquals("OK _________ UNFINISHED", client.send("start user user"));
+            awaitConnections(server, 1);
+            server.close();
+            awaitConnections(server, 0);
+            // the session is gone, so the connection is closed rather than answered
+            try {
+                assertNull(client.send("move 1 1"));
+            } catch (SocketException e) {
+                // reset by the server, also closed
+            }
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks the {@link OpeningBook} against a full {@link Minimax} search of every reachable 3x3 position.
+ */
+class OpeningBookTest {
+
+    /**
+     * Every position reachable from the empty 3x3 board by legal play, as symbol strings.
+     */
+    static List<String> reachablePositions() {
+        List<String> positions = new ArrayList<>();
+        Set<String> seen = new HashSet<>();
+        Deque<String> queue = new ArrayDeque<>(List.of("_".repeat(Grid.TOTAL_SYMBOLS)));
+        while (!queue.isEmpty()) {
+            String symbols = queue.poll();
+            if (!seen.add(symbols)) continue;
+            positions.add(symbols);
+            Grid grid = new Grid(symbols);
+            if (grid.getState() != Grid.State.UNFINISHED) continue;
+            char piece = grid.isXTurn() ? 'X' : 'O';
+            for (int i = 0; i < symbols.length(); i++) {
+                if (symbols.charAt(i) == '_') queue.add(symbols.substring(0, i)+piece+symbols.substring(i + 1));
+            }
+        }
+        return positions;
+    }
+
+    /**
+     * Get the result of perfect play implied by a minimax value.
+     */
+    static Grid.State outcome(int value) {
+        return value > 0 ? Grid.State.X_WINS : value < 0 ? Grid.State.O_WINS : Grid.State.DRAW;
+    }
+
+    @Test
+    void containsEveryReachablePosition() {
+        OpeningBook book = OpeningBook.getInstance();
+        List<String> positions = reachablePositions();
+        assertEquals(5478, positions.size());
+        for (String symbols : positions) {
+            assertTrue(book.contains(new Grid(symbols)), symbols);
+        }
+    }
+
+    @Test
+    void agreesWithMinimax() {
+        OpeningBook book = OpeningBook.getInstance();
+        for (String symbols : reachablePositions()) {
+            Grid grid = new Grid(symbols);
+            if (grid.getState() != Grid.State.UNFINISHED) {
+                assertEquals(grid.getState(), book.getOutcome(grid), symbols);
+                assertEquals(-1, book.getBestCell(grid), symbols);
+                continue;
+            }
+            Minimax minimax = new Minimax(grid);
+            int minimaxMove = minimax.getBestCell();
+            int value = minimax.getBestValue();
+            Grid.State outcome = outcome(value);
+            assertEquals(outcome, book.getOutcome(grid), symbols);
+            if (value != 0) {
+                // both prefer the quickest win and the slowest loss
+                assertEquals(Minimax.Score.MAX_SCORE.value() - Math.abs(value), book.getDistance(grid), symbols);
+            }
+            int moves = book.getBestMoves(grid);
+            assertNotEquals(0, moves, symbols);
+            assertNotEquals(0, moves & (1 << minimaxMove), symbols+" minimax move "+minimaxMove);
+            Piece piece = grid.nextPiece().orElseThrow();
+            boolean canWin = grid.nextWinMove(0, piece) != -1;
+            // every move the book gives keeps the outcome, and never passes up an immediate win
+            for (int move = 0; move < Grid.TOTAL_SYMBOLS; move++) {
+                if ((moves & (1 << move)) == 0) continue;
+                if (canWin) assertTrue(grid.isWinMove(move, piece), symbols+" move "+move+" does not win");
+                Grid child = new Grid(grid);
+                child.play(move, piece);
+                assertEquals(outcome, book.getOutcome(child), symbols+" move "+move);
+                assertEquals(book.getDistance(grid) - 1, book.getDistance(child), symbols+" move "+move);
+            }
+        }
+    }
+}
@@ -0,0 +1,113 @@
+package tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks {@link PositionAnalyzer} writes one result per input line, in order, wherever the lines fall in the chunks
+ * it copies the input in.
+ */
+class PositionAnalyzerTest {
+
+    /**
+     * Bytes of the input the analyser copies at once.
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+
+    @TempDir
+    Path directory;
+
+    /**
+     * Input lines without their line endings, and whether each is a valid board.
+     */
+    private final List<String> lines = new ArrayList<>();
+    private final List<Boolean> valid = new ArrayList<>();
+    private final StringBuilder input = new StringBuilder();
+
+    /**
+     * Add a line to the input.
+     * @param ending line ending, empty for the last line of a file not ending with a newline
+     */
+    private void add(String line, boolean isValid, String ending) {
+        lines.add(line);
+        valid.add(isValid);
+        input.append(line).append(ending);
+    }
+
+    /**
+     * Add an invalid line ending a number of bytes before the next chunk boundary.
+     */
+    private void padTo(int before) {
+        int next = (input.length() / CHUNK_SIZE + 1) * CHUNK_SIZE;
+        add("-".repeat(next - before - input.length() - 1), false, "\n");
+    }
+
+    @Test
+    void writesOneLinePerInputLine() throws IOException {
+        List<String> positions = OpeningBookTest.reachablePositions();
+        int position = 0;
+        // boards straddling the first three chunk boundaries, the third split between CR and LF
+        for (int boundary = 0; boundary < 3; boundary++) {
+            padTo(4);
+            add(positions.get(position++), true, boundary == 2 ? "\r\n" : "\n");
+            add(positions.get(position++), true, "\n");
+        }
+        padTo(1);
+        add(positions.get(position++), true, "\r\n");
+        // a line longer than a chunk starting part way through one, then invalid boards
+        add("X".repeat(CHUNK_SIZE + 100), false, "\r\n");
+        add("XXXXXXXXX", false, "\n");
+        add("XO_", false, "\n");
+        add("XO_XO_XOZ", false, "\r\n");
+        while (position < positions.size() - 1) {
+            add(positions.get(position++), true, position % 3 == 0 ? "\r\n" : "\n");
+        }
+        add(positions.get(position), true, "");
+        assertTrue(input.length() > 5 * CHUNK_SIZE);
+
+        Path in = directory.resolve("boards.txt");
+        Path out = directory.resolve("results.txt");
+        Files.writeString(in, input, StandardCharsets.US_ASCII);
+        PositionAnalyzer analyzer = new PositionAnalyzer();
+        analyzer.analyze(in, out);
+
+        List<String> results = Files.readAllLines(out, StandardCharsets.US_ASCII);
+        assertEquals(lines.size(), results.size());
+        long invalid = valid.stream().filter(isValid -> !isValid).count();
+        assertEquals(lines.size() - invalid, analyzer.getPositionCount());
+        assertEquals(invalid, analyzer.getInvalidCount());
+        assertEquals(input.length(), analyzer.getByteCount());
+        OpeningBook book = OpeningBook.getInstance();
+        for (int i = 0; i < lines.size(); i++) {
+            String line = lines.get(i);
+            String result = results.get(i);
+            if (!valid.get(i)) {
+                assertEquals(line+" INVALID", result, "line "+i);
+                continue;
+            }
+            Grid grid = new Grid(line);
+            String[] fields = result.split(" ");
+            assertEquals(line, fields[0], "line "+i);
+            assertEquals(grid.getState().name(), fields[1], "line "+i);
+            if (grid.getState() != Grid.State.UNFINISHED) {
+                assertEquals(3, fields.length, result);
+                assertEquals("-", fields[2], result);
+                continue;
+            }
+            assertEquals(4, fields.length, result);
+            int move = (Integer.parseInt(fields[2]) - 1) * Grid.LENGTH + Integer.parseInt(fields[3]) - 1;
+            assertNotEquals(0, book.getBestMoves(grid) & (1 << move), result);
+        }
+    }
+}
@@ -0,0 +1,156 @@
+package tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks {@link PositionCache} lookups, persistence and recovery from damaged files.
+ */
+class PositionCacheTest {
+
+    /**
+     * A 3x3 position with seven empty cells, so a settled search has depth 7.
+     */
+    private static final String POSITION = "X___O____";
+    private static final int SETTLED = 7;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void servesOnlySettledResults() throws IOException {
+        try (PositionCache cache = PositionCache.open(directory.resolve("cache"), 1024)) {
+            Grid grid = new Grid(POSITION);
+            assertTrue(cache.store(grid, 2, 5, 3));
+            assertEquals(-1, cache.getBestCell(grid));
+            assertEquals(2, cache.getHintCell(grid));
+            // a shallower search does not replace a deeper one
+            assertFalse(cache.store(grid, 1, 5, 2));
+            assertEquals(2, cache.getHintCell(grid));
+            assertTrue(cache.store(grid, 8, 0, SETTLED));
+            assertEquals(8, cache.getBestCell(grid));
+            // a forced result is settled however shallow the search
+            Grid won = new Grid("XX_OO____");
+            assertTrue(cache.store(won, 2, Minimax.Score.MAX_SCORE.value() - 1, 1));
+            assertEquals(2, cache.getBestCell(won));
+        }
+    }
+
+    @Test
+    void findsSymmetricPositions() throws IOException {
+        // no rotation or reflection maps this position onto itself, so each has one answer
+        String position = "X____O___";
+        try (PositionCache cache = PositionCache.open(directory.resolve("cache"), 1024)) {
+            Grid grid = new Grid(position);
+            cache.store(grid, 1, 0, SETTLED);
+            for (Symmetry symmetry : Symmetry.ALL) {
+                char[] symbols = new char[Grid.TOTAL_SYMBOLS];
+                for (int i = 0; i < symbols.length; i++) {
+                    symbols[symmetry.apply(i, Grid.LENGTH)] = position.charAt(i);
+                }
+                assertEquals(symmetry.apply(1, Grid.LENGTH), cache.getBestCell(new Grid(new String(symbols))));
+            }
+        }
+    }
+
+    @Test
+    void keepsResultsAfterReopening() throws IOException {
+        Path file = directory.resolve("cache");
+        Grid grid = new Grid(POSITION);
+        try (PositionCache cache = PositionCache.open(file, 1024)) {
+            cache.store(grid, 8, 0, SETTLED);
+        }
+        // an existing file keeps its own number of slots
+        try (PositionCache cache = PositionCache.open(file, 4096)) {
+            assertTrue(cache.isWritable());
+            assertEquals(1024, cache.getCapacity());
+            assertEquals(8, cache.getBestCell(grid));
+        }
+    }
+
+    @Test
+    void opensReadOnlyWhileAnotherCacheWrites() throws IOException {
+        Path file = directory.resolve("cache");
+        Grid grid = new Grid(POSITION);
+        try (PositionCache writer = PositionCache.open(file, 1024)) {
+            writer.store(grid, 8, 0, SETTLED);
+            try (PositionCache reader = PositionCache.open(file, 1024)) {
+                assertFalse(reader.isWritable());
+                assertEquals(8, reader.getBestCell(grid));
+                assertFalse(reader.store(grid, 1, 0, SETTLED));
+            }
+        }
+    }
+
+    @Test
+    void ignoresTornSlots() throws IOException {
+        Path file = directory.resolve("cache");
+        Grid torn = new Grid(POSITION);
+        Grid other = new Grid("X_______O");
+        try (PositionCache cache = PositionCache.open(file, 1024)) {
+            cache.store(torn, 8, 0, SETTLED);
+            cache.store(other, 1, 0, SETTLED);
+        }
+        // change the entry but not the checked key, as a crash part way through writing the slot would
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            long key = torn.getCanonicalHash();
+            for (int offset = 16; offset < buffer.capacity(); offset += 16) {
+                long entry = buffer.getLong(offset + 8);
+                if (entry != 0 && (buffer.getLong(offset) ^ entry) == key) buffer.putLong(offset + 8, entry ^ 0x12345);
+            }
+            buffer.force();
+        }
+        try (PositionCache cache = PositionCache.open(file, 1024)) {
+            assertEquals(-1, cache.getHintCell(torn));
+            assertEquals(1, cache.getBestCell(other));
+            assertTrue(cache.store(torn, 8, 0, SETTLED));
+            assertEquals(8, cache.getBestCell(torn));
+        }
+    }
+
+    @Test
+    void clearsTruncatedFiles() throws IOException {
+        Path file = directory.resolve("cache");
+        Grid grid = new Grid(POSITION);
+        try (PositionCache cache = PositionCache.open(file, 1024)) {
+            cache.store(grid, 8, 0, SETTLED);
+        }
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.truncate(channel.size() - 100);
+        }
+        try (PositionCache cache = PositionCache.open(file, 4096)) {
+            assertTrue(cache.isWritable());
+            assertEquals(4096, cache.getCapacity());
+            assertEquals(-1, cache.getHintCell(grid));
+        }
+    }
+
+    @Test
+    void clearsFilesWithABadHeader() throws IOException {
+        Path file = directory.resolve("cache");
+        Grid grid = new Grid(POSITION);
+        try (PositionCache cache = PositionCache.open(file, 1024)) {
+            cache.store(grid, 8, 0, SETTLED);
+        }
+        // change the slot count without updating the checksum
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+            channel.write(ByteBuffer.wrap(new byte[]{9}), 9);
+        }
+        try (PositionCache cache = PositionCache.open(file, 2048)) {
+            assertEquals(2048, cache.getCapacity());
+            assertEquals(-1, cache.getHintCell(grid));
+        }
+    }
+}
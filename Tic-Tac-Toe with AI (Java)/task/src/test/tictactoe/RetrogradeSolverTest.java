@@ -0,0 +1,85 @@
+package tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+/**
+ * Checks a solved 3x3 {@link RetrogradeSolver.Table} against the {@link OpeningBook} and a full {@link Minimax}
+ * search of every reachable position.
+ */
+class RetrogradeSolverTest {
+
+    @TempDir
+    static Path directory;
+    private static RetrogradeSolver solver;
+    private static RetrogradeSolver.Table table;
+
+    @BeforeAll
+    static void solve() throws IOException {
+        solver = new RetrogradeSolver(Grid.LENGTH, Grid.LENGTH);
+        solver.solve(directory.resolve("3x3.table"));
+        table = RetrogradeSolver.Table.open(directory.resolve("3x3.table"));
+    }
+
+    @Test
+    void leavesOnlyTheTable() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            assertEquals(List.of(directory.resolve("3x3.table")), files.toList());
+        }
+        assertEquals(6046, solver.getPositionCount());
+    }
+
+    @Test
+    void cleansUpAfterAFailedWrite(@TempDir Path other) throws IOException {
+        // a directory that is not empty cannot be replaced by the table
+        Path output = other.resolve("3x3.table");
+        Files.createDirectory(output);
+        Files.createFile(output.resolve("file"));
+        assertThrows(IOException.class, () -> new RetrogradeSolver(Grid.LENGTH, Grid.LENGTH).solve(output));
+        try (Stream<Path> files = Files.list(other)) {
+            assertEquals(List.of(output), files.toList());
+        }
+    }
+
+    @Test
+    void agreesWithBookAndMinimax() {
+        OpeningBook book = OpeningBook.getInstance();
+        for (String symbols : OpeningBookTest.reachablePositions()) {
+            Grid grid = new Grid(symbols);
+            Grid.State outcome = table.getOutcome(grid);
+            assertEquals(book.getOutcome(grid), outcome, symbols);
+            assertEquals(book.getDistance(grid), table.getDistance(grid), symbols);
+            if (grid.getState() != Grid.State.UNFINISHED) {
+                assertEquals(0, table.getDistance(grid), symbols);
+                assertEquals(-1, table.getBestCell(grid), symbols);
+                continue;
+            }
+            Minimax minimax = new Minimax(grid);
+            minimax.getBestCell();
+            int value = minimax.getBestValue();
+            assertEquals(OpeningBookTest.outcome(value), outcome, symbols);
+            if (value != 0) {
+                // both prefer the quickest win and the slowest loss
+                assertEquals(Minimax.Score.MAX_SCORE.value() - Math.abs(value), table.getDistance(grid), symbols);
+            }
+            Grid child = new Grid(grid);
+            child.play(table.getBestCell(grid), grid.nextPiece().orElseThrow());
+            assertEquals(outcome, book.getOutcome(child), symbols);
+        }
+    }
+
+    @Test
+    void rejectsBoardsTooLargeToSolve() {
+        assertThrows(IllegalArgumentException.class, () -> new RetrogradeSolver(5, 4));
+    }
+}
@@ -0,0 +1,105 @@
+package tictactoe;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Checks {@link SearchCache} evicts in least recently used order and only serves settled results.
+ */
+class SearchCacheTest {
+
+    /**
+     * Pack an entry in the {@link PositionCache} layout.
+     */
+    private static long entry(int move, int value, int depth) {
+        return (value & 0xFFFFFFFFL) | ((long) (move + 1) << 32) | ((long) depth << 48);
+    }
+
+    @Test
+    void evictsLeastRecentlyUsed() {
+        SearchCache cache = new SearchCache(3, 0, 1);
+        cache.put(1, entry(0, 0, 1));
+        cache.put(2, entry(1, 0, 1));
+        cache.put(3, entry(2, 0, 1));
+        cache.get(1); // 2 is now the least recently used
+        cache.put(4, entry(3, 0, 1));
+        assertEquals(SearchCache.MISS, cache.get(2));
+        assertEquals(entry(0, 0, 1), cache.get(1));
+        cache.put(3, entry(2, 0, 1)); // updating counts as a use, so 4 is now the least recently used
+        cache.put(5, entry(4, 0, 1));
+        assertEquals(SearchCache.MISS, cache.get(4));
+        assertEquals(3, cache.getSize());
+        assertEquals(2, cache.getEvictionCount());
+    }
+
+    @Test
+    void matchesAReferenceModel() {
+        int capacity = 64;
+        SearchCache cache = new SearchCache(capacity, 0, 1);
+        // an access-ordered map holding the same entries, eldest first
+        Map<Long, Long> reference = new LinkedHashMap<>(16, 0.75f, true);
+        SplittableRandom random = new SplittableRandom(1);
+        long evictions = 0;
+        for (int i = 0; i < 100_000; i++) {
+            long key = random.nextLong(3 * capacity) * 0x9E3779B97F4A7C15L;
+            if (random.nextBoolean()) {
+                Long expected = reference.get(key);
+                assertEquals(expected == null ? SearchCache.MISS : expected, cache.get(key));
+            } else {
+                long entry = entry(random.nextInt(16), random.nextInt(), random.nextInt(1, 16));
+                Long old = reference.get(key);
+                if (old == null && reference.size() == capacity) {
+                    Iterator<Long> eldest = reference.keySet().iterator();
+                    eldest.next();
+                    eldest.remove();
+                    evictions++;
+                }
+                reference.put(key, old != null && PositionCache.depth(old) > PositionCache.depth(entry) ? old : entry);
+                cache.put(key, entry);
+            }
+        }
+        assertEquals(reference.size(), cache.getSize());
+        assertEquals(evictions, cache.getEvictionCount());
+    }
+
+    @Test
+    void keepsTheDeeperSearch() {
+        SearchCache cache = new SearchCache(16, 0, 1);
+        cache.put(1, entry(3, 0, 5));
+        cache.put(1, entry(4, 0, 2));
+        assertEquals(entry(3, 0, 5), cache.get(1));
+        cache.put(1, entry(6, 0, 5));
+        assertEquals(entry(6, 0, 5), cache.get(1));
+    }
+
+    @Test
+    void servesOnlySettledResults() {
+        SearchCache cache = new SearchCache(16, 0, 1);
+        Grid grid = new Grid("X___O____");
+        cache.put(grid, 2, 5, 3);
+        assertEquals(-1, cache.getBestCell(grid));
+        assertEquals(2, cache.getHintCell(grid));
+        cache.put(grid, 8, 0, grid.getEmptyCount());
+        assertEquals(8, cache.getBestCell(grid));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+    }
+
+    @Test
+    void boundsMemory() {
+        SearchCache cache = new SearchCache(1 << 20, 100L * SearchCache.BYTES_PER_ENTRY);
+        assertEquals(100, cache.getCapacity());
+        for (long key = 1; key <= 1000; key++) {
+            cache.put(key * 0x9E3779B97F4A7C15L, entry(0, 0, 1));
+        }
+        assertEquals(100, cache.getSize());
+        assertThrows(IllegalArgumentException.class, () -> new SearchCache(16, SearchCache.BYTES_PER_ENTRY - 1));
+    }
+}
@@ -0,0 +1,308 @@
+package tictactoe;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
+
+/**
+ * Finds the best move and value of many positions at once, e.g. for offline analysis.
+ * Positions that are equal, or rotations or reflections of each other, are only searched once,
+ * and the unique positions are searched in parallel, all sharing the {@link Minimax} transposition table.
+ * Positions that are not valid boards are given an invalid result, written as {@code position INVALID}, without
+ * stopping the rest of the batch.
+ */
+public class BatchSolver implements AutoCloseable {
+
+    /**
+     * Number of positions read from a stream before they are searched together.
+     */
+    private static final int CHUNK_SIZE = 4096;
+
+    /**
+     * Searches the unique positions of each batch.
+     */
+    private final ForkJoinPool pool;
+    /**
+     * Longest time to search each unique position for, in milliseconds.
+     */
+    private final long timeLimit;
+    /**
+     * Number of positions given to the solver.
+     */
+    private final AtomicLong positions = new AtomicLong();
+    /**
+     * Number of unique positions searched.
+     */
+    private final AtomicLong searches = new AtomicLong();
+    /**
+     * Total time spent solving batches, in nanoseconds.
+     */
+    private final AtomicLong elapsedNanos = new AtomicLong();
+
+    /**
+     * Create a solver searching every position to the end of the game on every available core.
+     */
+    public BatchSolver() {
+        this(Minimax.UNLIMITED, Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create a solver.
+     * @param timeLimit milliseconds to search each unique position for, {@link Minimax#UNLIMITED} to always
+     *                  search to the end of the game
+     * @param parallelism number of positions to search at once
+     */
+    public BatchSolver(long timeLimit, int parallelism) {
+        if (timeLimit <= 0 || parallelism < 1) {
+            throw new IllegalArgumentException("Time limit and parallelism must be positive");
+        }
+        this.timeLimit = timeLimit;
+        this.pool = new ForkJoinPool(parallelism);
+    }
+
+    /**
+     * The best move and value of one position.
+     */
+    public static final class Result {
+        private final String position;
+        private final int[] move;
+        private final int value;
+        private final boolean valid;
+
+        private Result(String position, int[] move, int value) {
+            this(position, move, value, true);
+        }
+
+        private Result(String position, int[] move, int value, boolean valid) {
+            this.position = position;
+            this.move = move;
+            this.value = value;
+            this.valid = valid;
+        }
+
+        /**
+         * Create the result of a position that is not a valid board.
+         */
+        private static Result invalid(String position) {
+            return new Result(position, null, 0, false);
+        }
+
+        /**
+         * Get the position as it was given to the solver.
+         */
+        public String getPosition() {
+            return position;
+        }
+
+        /**
+         * Get the best move for the player to move.
+         * @return {y, x} co-ordinate of the move, null if the game is over
+         */
+        public int[] getMove() {
+            return move == null ? null : move.clone();
+        }
+
+        /**
+         * Get the value of the position for player 'X', see {@link Minimax#getBestValue()}.
+         * @return value, 0 if the position is not a valid board
+         */
+        public int getValue() {
+            return value;
+        }
+
+        /**
+         * Was the position a valid board: square, of valid symbols, with its pieces placed in turn, X first?
+         */
+        public boolean isValid() {
+            return valid;
+        }
+
+        @Override
+        public String toString() {
+            if (!valid) return position+" INVALID";
+            String cell = move == null ? "-" : (move[0] + 1)+" "+(move[1] + 1);
+            return position+" "+cell+" "+value;
+        }
+    }
+
+    /**
+     * Solve every position in an array.
+     * @param positions boards in the format read by {@link Grid#Grid(String)}
+     * @return result of each position, in the same order, invalid for positions that are not valid boards
+     */
+    public Result[] solve(String... positions) {
+        long start = System.nanoTime();
+        Grid[] grids = new Grid[positions.length];
+        // solve each canonical board once, keyed by its rules and symbols
+        Map<String, Integer> uniqueIndexes = new HashMap<>();
+        List<Grid> unique = new ArrayList<>();
+        int[] uniqueOf = new int[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            grids[i] = parse(positions[i]);
+            if (grids[i] == null) continue;
+            String key = grids[i].getWinLength()+":"+grids[i].getCanonicalSymbols();
+            Integer index = uniqueIndexes.get(key);
+            if (index == null) {
+                index = unique.size();
+                uniqueIndexes.put(key, index);
+                unique.add(canonical(grids[i]));
+            }
+            uniqueOf[i] = index;
+        }
+        Result[] solved = search(unique);
+        // map each canonical move back onto the orientation the position was given in
+        Result[] results = new Result[positions.length];
+        for (int i = 0; i < positions.length; i++) {
+            if (grids[i] == null) {
+                results[i] = Result.invalid(positions[i]);
+                continue;
+            }
+            Result canonicalResult = solved[uniqueOf[i]];
+            int[] move = canonicalResult.move;
+            if (move != null) {
+                Symmetry inverse = grids[i].getCanonicalSymmetry().inverse();
+                move = inverse.apply(move, grids[i].getSize());
+            }
+            results[i] = new Result(positions[i], move, canonicalResult.value);
+        }
+        this.positions.addAndGet(positions.length);
+        searches.addAndGet(unique.size());
+        elapsedNanos.addAndGet(System.nanoTime() - start);
+        return results;
+    }
+
+    /**
+     * Solve every position in a stream, searching them in chunks of {@value CHUNK_SIZE} as they are read.
+     * @param positions boards in the format read by {@link Grid#Grid(String)}
+     * @return lazy stream of the result of each position, in the same order, see {@link #solve(String...)}
+     */
+    public Stream<Result> solve(Stream<String> positions) {
+        Iterator<String> source = positions.iterator();
+        Iterator<Result[]> chunks = new Iterator<>() {
+            @Override
+            public boolean hasNext() {
+                return source.hasNext();
+            }
+
+            @Override
+            public Result[] next() {
+                List<String> chunk = new ArrayList<>(CHUNK_SIZE);
+                while (source.hasNext() && chunk.size() < CHUNK_SIZE) {
+                    chunk.add(source.next());
+                }
+                return solve(chunk.toArray(new String[0]));
+            }
+        };
+        return StreamSupport.stream(Spliterators.spliteratorUnknownSize(chunks, Spliterator.ORDERED), false)
+                .flatMap(Stream::of)
+                .onClose(positions::close);
+    }
+
+    /**
+     * Read a board, checking it before it is searched, as a search of an impossible board fails.
+     * @return board, null if the position is not square, has an invalid symbol, or its pieces were not placed in
+     * turn, X first
+     */
+    private static Grid parse(String position) {
+        Grid grid;
+        try {
+            grid = new Grid(position);
+        } catch (IndexOutOfBoundsException | NoSuchElementException | IllegalArgumentException e) {
+            return null;
+        }
+        int difference = grid.getPieceCount(Grid.X_PIECE) - grid.getPieceCount(Grid.O_PIECE);
+        return difference == 0 || difference == 1 ? grid : null;
+    }
+
+    /**
+     * Create the canonical orientation of a board, see {@link Grid#getCanonicalSymbols()}.
+     */
+    private static Grid canonical(Grid grid) {
+        return new Grid(grid.getCanonicalSymbols(), grid.getWinLength());
+    }
+
+    /**
+     * Search unique boards in parallel.
+     * @return result of each board, in the same order
+     */
+    private Result[] search(List<Grid> grids) {
+        List<Callable<Result>> tasks = new ArrayList<>(grids.size());
+        for (Grid grid : grids) {
+            tasks.add(() -> {
+                Minimax minimax = new Minimax(grid, Minimax.Evaluator.OPEN_LINES, timeLimit, Minimax.UNLIMITED);
+                int[] move = minimax.getBestMove();
+                return new Result(grid.getSymbols(), move, minimax.getBestValue());
+            });
+        }
+        Result[] results = new Result[grids.size()];
+        try {
+            List<Future<Result>> futures = pool.invokeAll(tasks);
+            for (int i = 0; i < results.length; i++) {
+                results[i] = futures.get(i).get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while solving positions", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("Failed to solve a position", e.getCause());
+        }
+        return results;
+    }
+
+    /**
+     * Get the number of positions solved.
+     */
+    public long getPositionCount() {
+        return positions.get();
+    }
+
+    /**
+     * Get the number of unique positions searched, after removing equal and symmetric positions.
+     */
+    public long getSearchCount() {
+        return searches.get();
+    }
+
+    /**
+     * Get the number of positions solved per second, over every batch so far.
+     */
+    public double getThroughput() {
+        long nanos = elapsedNanos.get();
+        return nanos == 0 ? 0 : positions.get() * 1e9 / nanos;
+    }
+
+    /**
+     * Stop the solver's threads, once it has no more positions to solve.
+     */
+    @Override
+    public void close() {
+        pool.shutdown();
+    }
+
+    /**
+     * Solve positions read from standard input, one per line, printing each position's best move and value.
+     */
+    public static void main(String[] args) {
+        BatchSolver solver = new BatchSolver();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(System.in));
+        try (solver; Stream<String> lines = reader.lines()) {
+            solver.solve(lines.map(String::trim).filter(line -> !line.isEmpty())).forEach(System.out::println);
+        }
+        System.err.printf("%d positions, %d searched, %.0f positions/s%n",
+                solver.getPositionCount(), solver.getSearchCount(), solver.getThroughput());
+    }
+}
@@ -0,0 +1,528 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compact representation of the game board as two bit sets, one for each player's pieces.
+ * Bit {@code i} of a set corresponds to the cell at row {@code i / size}, column {@code i % size}.
+ * <p>
+ * Every winning-length line also keeps a count of each player's pieces, and every empty cell the number of lines
+ * it would complete for each player. Both are updated from only the lines through a changed cell, so finding wins
+ * and win moves never scans the whole board.
+ */
+class Bitboard {
+
+    /**
+     * Row and column steps of the four line directions: horizontal, vertical, diagonal down and diagonal up.
+     */
+    static final int[][] DIRECTIONS = {{0, 1}, {1, 0}, {1, 1}, {-1, 1}};
+    /**
+     * Zobrist keys for each board size, shared by every board of that size.
+     */
+    private static final Map<Integer, Keys> KEYS = new ConcurrentHashMap<>();
+    /**
+     * Cells each line direction can start from, for each board size and win length of up to 64 cells.
+     */
+    private static final Map<Integer, long[]> LINE_STARTS = new ConcurrentHashMap<>();
+    /**
+     * Winning-length lines for each board size and win length, keyed by {@code size << 16 | winLength}.
+     */
+    private static final Map<Integer, Lines> LINES = new ConcurrentHashMap<>();
+
+    /**
+     * Random keys XORed together to hash a board.
+     * Generated from a fixed seed so hashes are stable between runs.
+     */
+    private static class Keys {
+        /**
+         * Starting hash of a board for each win length, so equal pieces under different rules hash differently.
+         */
+        private final long[] rules;
+        /**
+         * Keys for each piece on each cell as seen through each {@link Symmetry}, indexed by piece, symmetry then cell.
+         */
+        private final long[][][] cells;
+
+        /**
+         * Generate the keys for an NxN board.
+         */
+        private Keys(int size) {
+            SplittableRandom random = new SplittableRandom(0x5DEECE66DL + size);
+            int total = size * size;
+            this.rules = new long[size + 1];
+            for (int i = 0; i < rules.length; i++) {
+                rules[i] = random.nextLong();
+            }
+            long[][] zobrist = new long[2][total];
+            for (long[] pieceKeys : zobrist) {
+                for (int i = 0; i < total; i++) {
+                    pieceKeys[i] = random.nextLong();
+                }
+            }
+            this.cells = new long[2][Symmetry.ALL.length][total];
+            for (int p = 0; p < zobrist.length; p++) {
+                for (Symmetry symmetry : Symmetry.ALL) {
+                    for (int i = 0; i < total; i++) {
+                        cells[p][symmetry.ordinal()][i] = zobrist[p][symmetry.apply(i, size)];
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Every run of cells a player can win with, shared by every board with the same rules.
+     */
+    private static class Lines {
+        /**
+         * Cells of each line, in order along the line.
+         */
+        private final int[][] lineCells;
+        /**
+         * Lines passing through each cell.
+         */
+        private final int[][] cellLines;
+
+        /**
+         * Find the lines of an NxN board, starting from each cell in each of the {@link #DIRECTIONS}.
+         */
+        private Lines(int size, int winLength) {
+            int total = size * size;
+            List<int[]> lines = new ArrayList<>();
+            int[] linesPerCell = new int[total];
+            for (int i = 0; i < total; i++) {
+                for (int[] direction : DIRECTIONS) {
+                    int endY = i / size + direction[0] * (winLength - 1);
+                    int endX = i % size + direction[1] * (winLength - 1);
+                    if (endY < 0 || endY >= size || endX >= size) continue; // line does not fit on the board
+                    int[] line = new int[winLength];
+                    for (int k = 0; k < winLength; k++) {
+                        line[k] = i + k * (direction[0] * size + direction[1]);
+                        linesPerCell[line[k]]++;
+                    }
+                    lines.add(line);
+                }
+            }
+            this.lineCells = lines.toArray(new int[0][]);
+            this.cellLines = new int[total][];
+            for (int i = 0; i < total; i++) {
+                cellLines[i] = new int[linesPerCell[i]];
+            }
+            int[] filled = new int[total];
+            for (int line = 0; line < lineCells.length; line++) {
+                for (int cell : lineCells[line]) {
+                    cellLines[cell][filled[cell]++] = line;
+                }
+            }
+        }
+    }
+
+    /**
+     * Dimensions of the NxN square board.
+     */
+    private final int size;
+    /**
+     * Number of pieces in a row needed to win.
+     */
+    private final int winLength;
+    /**
+     * Total number of cells on the board.
+     */
+    private final int cells;
+    /**
+     * Cells occupied by 'X', 64 cells per word.
+     */
+    private final long[] xWords;
+    /**
+     * Cells occupied by 'O', 64 cells per word.
+     */
+    private final long[] oWords;
+    /**
+     * Zobrist keys for this board's size.
+     */
+    private final Keys keys;
+    /**
+     * Zobrist hash of the current board under each {@link Symmetry}, updated on every change.
+     */
+    private final long[] hashes = new long[Symmetry.ALL.length];
+    /**
+     * Cells a whole line can start from in each of the {@link #DIRECTIONS}, null for boards of over 64 cells.
+     */
+    private final long[] lineStarts;
+    /**
+     * Lines of this board's size and win length.
+     */
+    private final Lines lines;
+    /**
+     * Number of 'X' then 'O' pieces on each line.
+     */
+    private final int[][] lineCounts;
+    /**
+     * Number of lines each empty cell would complete for 'X' then 'O'.
+     */
+    private final int[][] threats;
+    /**
+     * Empty cells that would complete a line for 'X' then 'O', 64 cells per word.
+     */
+    private final long[][] winWords;
+
+    /**
+     * Create an empty board.
+     * @param size dimensions of the NxN square board
+     * @param winLength number of pieces in a row needed to win
+     */
+    Bitboard(int size, int winLength) {
+        this.size = size;
+        this.winLength = winLength;
+        this.cells = size * size;
+        int words = (cells + Long.SIZE - 1) / Long.SIZE;
+        this.xWords = new long[words];
+        this.oWords = new long[words];
+        this.keys = KEYS.computeIfAbsent(size, Keys::new);
+        Arrays.fill(hashes, keys.rules[winLength]);
+        this.lineStarts = words == 1
+                ? LINE_STARTS.computeIfAbsent(size * (Long.SIZE + 1) + winLength, key -> findLineStarts())
+                : null;
+        this.lines = LINES.computeIfAbsent(size << 16 | winLength, key -> new Lines(size, winLength));
+        this.lineCounts = new int[2][lines.lineCells.length];
+        this.threats = new int[2][cells];
+        this.winWords = new long[2][words];
+        resetLines();
+    }
+
+    /**
+     * Create a copy of another board.
+     */
+    Bitboard(Bitboard other) {
+        this.size = other.size;
+        this.winLength = other.winLength;
+        this.cells = other.cells;
+        this.xWords = other.xWords.clone();
+        this.oWords = other.oWords.clone();
+        this.keys = other.keys;
+        this.lineStarts = other.lineStarts;
+        System.arraycopy(other.hashes, 0, hashes, 0, hashes.length);
+        this.lines = other.lines;
+        this.lineCounts = new int[][]{other.lineCounts[0].clone(), other.lineCounts[1].clone()};
+        this.threats = new int[][]{other.threats[0].clone(), other.threats[1].clone()};
+        this.winWords = new long[][]{other.winWords[0].clone(), other.winWords[1].clone()};
+    }
+
+    /**
+     * Set the line counts and win moves of an empty board, where only lines of one cell are a move from winning.
+     */
+    private void resetLines() {
+        for (int p = 0; p < 2; p++) {
+            Arrays.fill(lineCounts[p], 0);
+            Arrays.fill(threats[p], 0);
+            Arrays.fill(winWords[p], 0);
+        }
+        if (winLength == 1) {
+            for (int[] line : lines.lineCells) {
+                addThreat(0, line[0]);
+                addThreat(1, line[0]);
+            }
+        }
+    }
+
+    /**
+     * Is a cell set in a bit set?
+     */
+    private static boolean isSet(long[] words, int index) {
+        return (words[index >>> 6] & (1L << index)) != 0;
+    }
+
+    /**
+     * Zobrist hash of the current board after it has been transformed.
+     */
+    long getHash(Symmetry symmetry) {
+        return hashes[symmetry.ordinal()];
+    }
+
+    /**
+     * Add or remove a piece's keys from the hash of every transform.
+     * @param piece 0 for 'X', 1 for 'O'
+     */
+    private void toggleHash(int piece, int index) {
+        long[][] pieceKeys = keys.cells[piece];
+        for (int t = 0; t < hashes.length; t++) {
+            hashes[t] ^= pieceKeys[t][index];
+        }
+    }
+
+    /**
+     * Get the symbol at a cell index.
+     * @return 'X', 'O' or ' ' (empty)
+     */
+    char getSymbol(int index) {
+        if (isSet(xWords, index)) return 'X';
+        if (isSet(oWords, index)) return 'O';
+        return ' ';
+    }
+
+    /**
+     * Set the symbol at a cell index, replacing any existing piece.
+     * @param symbol 'X', 'O' or ' ' (empty)
+     */
+    void set(int index, char symbol) {
+        int word = index >>> 6;
+        long bit = 1L << index;
+        // remove any existing piece from the hash and lines, while the cell is still occupied
+        if ((xWords[word] & bit) != 0) {
+            toggleHash(0, index);
+            removeFromLines(index, 0);
+        }
+        if ((oWords[word] & bit) != 0) {
+            toggleHash(1, index);
+            removeFromLines(index, 1);
+        }
+        xWords[word] &= ~bit;
+        oWords[word] &= ~bit;
+        switch (symbol) {
+            case 'X' -> {
+                xWords[word] |= bit;
+                toggleHash(0, index);
+                addToLines(index, 0);
+            }
+            case 'O' -> {
+                oWords[word] |= bit;
+                toggleHash(1, index);
+                addToLines(index, 1);
+            }
+        }
+    }
+
+    /**
+     * Count a piece just placed on the lines through its cell, updating which cells would complete them.
+     * A line is a move from winning for a player when it holds one fewer than the win length of their pieces
+     * and none of the opponent's.
+     * @param player 0 for 'X', 1 for 'O'
+     */
+    private void addToLines(int index, int player) {
+        int[] mine = lineCounts[player];
+        int[] theirs = lineCounts[1 - player];
+        int ready = winLength - 1;
+        for (int line : lines.cellLines[index]) {
+            int before = mine[line]++;
+            int opponent = theirs[line];
+            if (opponent == 0) {
+                if (before == ready) {
+                    removeThreat(player, index); // this cell was the line's only empty cell
+                } else if (before + 1 == ready) {
+                    addThreat(player, emptyCell(line));
+                }
+            }
+            if (before == 0 && opponent == ready) removeThreat(1 - player, index); // blocked
+        }
+    }
+
+    /**
+     * Remove a piece from the lines through its cell, while the cell is still occupied.
+     * @param player 0 for 'X', 1 for 'O'
+     */
+    private void removeFromLines(int index, int player) {
+        int[] mine = lineCounts[player];
+        int[] theirs = lineCounts[1 - player];
+        int ready = winLength - 1;
+        for (int line : lines.cellLines[index]) {
+            int before = mine[line]--;
+            int opponent = theirs[line];
+            if (opponent == 0) {
+                if (before == ready) {
+                    removeThreat(player, emptyCell(line));
+                } else if (before - 1 == ready) {
+                    addThreat(player, index); // this cell becomes the line's only empty cell
+                }
+            }
+            if (before == 1 && opponent == ready) addThreat(1 - player, index); // unblocked
+        }
+    }
+
+    /**
+     * Find the only empty cell of a line that is a move from winning.
+     */
+    private int emptyCell(int line) {
+        for (int cell : lines.lineCells[line]) {
+            if (!isSet(xWords, cell) && !isSet(oWords, cell)) return cell;
+        }
+        throw new IllegalStateException("Line "+line+" has no empty cell");
+    }
+
+    /**
+     * Count another line an empty cell would complete for a player.
+     */
+    private void addThreat(int player, int index) {
+        if (threats[player][index]++ == 0) winWords[player][index >>> 6] |= 1L << index;
+    }
+
+    /**
+     * Stop counting a line an empty cell would complete for a player.
+     */
+    private void removeThreat(int player, int index) {
+        if (--threats[player][index] == 0) winWords[player][index >>> 6] &= ~(1L << index);
+    }
+
+    /**
+     * Remove every piece, leaving an empty board.
+     */
+    void clear() {
+        Arrays.fill(xWords, 0);
+        Arrays.fill(oWords, 0);
+        Arrays.fill(hashes, keys.rules[winLength]);
+        resetLines();
+    }
+
+    /**
+     * Does a player have a winning line anywhere on the board?
+     * Boards of up to 64 cells test every line at once with shifts, larger boards test the lines through each piece.
+     * @param symbol 'X' or 'O'
+     */
+    boolean hasLine(char symbol) {
+        long[] words = symbol == 'X' ? xWords : oWords;
+        if (lineStarts != null) {
+            long bits = words[0];
+            for (int d = 0; d < DIRECTIONS.length; d++) {
+                int step = DIRECTIONS[d][0] * size + DIRECTIONS[d][1];
+                // keep the cells that start a line, then those whose next cells along the line are all set
+                long lines = bits & lineStarts[d];
+                for (int k = 1; k < winLength && lines != 0; k++) {
+                    int shift = k * step;
+                    lines &= shift > 0 ? bits >>> shift : bits << -shift;
+                }
+                if (lines != 0) return true;
+            }
+            return false;
+        }
+        for (int i = 0; i < cells; i++) {
+            if (isSet(words, i) && completesLine(i, symbol)) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Find the cells a whole line can start from in each of the {@link #DIRECTIONS}, for boards of up to 64 cells.
+     */
+    private long[] findLineStarts() {
+        long[] starts = new long[DIRECTIONS.length];
+        for (int d = 0; d < DIRECTIONS.length; d++) {
+            int dy = DIRECTIONS[d][0];
+            int dx = DIRECTIONS[d][1];
+            for (int i = 0; i < cells; i++) {
+                int endY = i / size + dy * (winLength - 1);
+                int endX = i % size + dx * (winLength - 1);
+                if (endY >= 0 && endY < size && endX >= 0 && endX < size) starts[d] |= 1L << i;
+            }
+        }
+        return starts;
+    }
+
+    /**
+     * Get the cells of each winning line as a bit set, for boards of up to 64 cells.
+     * @param size dimensions of the NxN square board
+     * @param winLength number of pieces in a row needed to win
+     */
+    static long[] lineMasks(int size, int winLength) {
+        if (size * size > Long.SIZE) {
+            throw new IllegalArgumentException("Line masks only fit boards of up to "+Long.SIZE+" cells");
+        }
+        Lines lines = LINES.computeIfAbsent(size << 16 | winLength, key -> new Lines(size, winLength));
+        long[] masks = new long[lines.lineCells.length];
+        for (int line = 0; line < masks.length; line++) {
+            for (int cell : lines.lineCells[line]) {
+                masks[line] |= 1L << cell;
+            }
+        }
+        return masks;
+    }
+
+    /**
+     * Count the pieces of one player.
+     * @param symbol 'X' or 'O'
+     */
+    int count(char symbol) {
+        long[] words = symbol == 'X' ? xWords : oWords;
+        int count = 0;
+        for (long word : words) {
+            count += Long.bitCount(word);
+        }
+        return count;
+    }
+
+    /**
+     * Find the first empty cell at or after an index.
+     * @param from cell index to start searching from
+     * @return cell index, -1 if there are no more empty cells
+     */
+    int nextEmpty(int from) {
+        if (from >= cells) return -1;
+        int word = from >>> 6;
+        long empty = ~(xWords[word] | oWords[word]) & (-1L << from);
+        while (empty == 0) {
+            if (++word == xWords.length) return -1;
+            empty = ~(xWords[word] | oWords[word]);
+        }
+        int index = (word << 6) + Long.numberOfTrailingZeros(empty);
+        return index < cells ? index : -1;
+    }
+
+    /**
+     * Find the first empty cell at or after an index that would complete a line for a player.
+     * @param from cell index to start searching from
+     * @param symbol 'X' or 'O'
+     * @return cell index, -1 if there are no more win moves
+     */
+    int nextWinMove(int from, char symbol) {
+        if (from >= cells) return -1;
+        long[] words = winWords[symbol == 'X' ? 0 : 1];
+        int word = from >>> 6;
+        long moves = words[word] & (-1L << from);
+        while (moves == 0) {
+            if (++word == words.length) return -1;
+            moves = words[word];
+        }
+        return (word << 6) + Long.numberOfTrailingZeros(moves);
+    }
+
+    /**
+     * Would a player's piece at a cell be part of a winning line?
+     * Only the counts of the lines passing through the cell are checked, so the cost does not grow with the board.
+     * @param index cell that was last changed, or an empty cell to test
+     * @param symbol 'X' or 'O'
+     */
+    boolean completesLine(int index, char symbol) {
+        int player = symbol == 'X' ? 0 : 1;
+        if (!isSet(xWords, index) && !isSet(oWords, index)) {
+            return threats[player][index] > 0;
+        }
+        // the cell holds a piece, which completes a line if it is the player's and the line is full of them
+        int[] mine = lineCounts[player];
+        int[] theirs = lineCounts[1 - player];
+        int needed = isSet(player == 0 ? xWords : oWords, index) ? winLength : winLength - 1;
+        int blocking = winLength - needed; // the opponent's piece on this cell, if it is not the player's
+        for (int line : lines.cellLines[index]) {
+            if (mine[line] == needed && theirs[line] == blocking) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Number of winning-length lines on the board.
+     */
+    int getLineCount() {
+        return lines.lineCells.length;
+    }
+
+    /**
+     * Count a player's pieces on a line.
+     * @param line from 0 to {@link #getLineCount()}
+     * @param symbol 'X' or 'O'
+     */
+    int count(int line, char symbol) {
+        return lineCounts[symbol == 'X' ? 0 : 1][line];
+    }
+}
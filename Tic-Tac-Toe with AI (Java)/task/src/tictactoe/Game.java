@@ -1,6 +1,7 @@
 package tictactoe;
 
 import java.util.*;
+import java.util.random.RandomGenerator;
 
 import tictactoe.Menu.Player;
 
@@ -10,58 +11,130 @@ import tictactoe.Menu.Player;
 public class Game {
 
     /**
-     * Used to make random moves.
+     * Collection of move generation strategies offered in the {@link Menu}, shared by every game.
      */
-    private static final Random random = new Random();
+    private static final Map<Menu.Player, Strategy> STRATEGIES = new EnumMap<>(Player.class);
+
+    static {
+        STRATEGIES.put(Player.USER, new UserMove());
+        STRATEGIES.put(Player.EASY, new EasyMove());
+        STRATEGIES.put(Player.MEDIUM, new MediumMove());
+        STRATEGIES.put(Player.HARD, new HardMove());
+        STRATEGIES.put(Player.MCTS, new MctsMove());
+    }
+
     /**
      * Represents the game board.
      */
     private final Grid grid;
     /**
-     * Collection of move generation strategies offered in the {@link Menu}.
+     * Is the game played without any console output?
+     */
+    private final boolean quiet;
+    /**
+     * Used to make random moves, only by the thread playing the game.
+     */
+    private final RandomGenerator random;
+    /**
+     * Most threads a computer player searches each move with.
+     */
+    private int searchParallelism = Strategy.DEFAULT_PARALLELISM;
+    /**
+     * Cell index of each move in the order played, e.g. to record the game.
      */
-    @SuppressWarnings("MismatchedQueryAndUpdateOfCollection")
-    private final Map<Menu.Player, Strategy> moveStrategy;
+    private final int[] moves;
 
     /**
-     * Create a new game with an empty board and populate the move strategies.
+     * Create a new game with an empty NxN board.
+     * @param size dimensions of the square board
+     * @param winLength number of pieces in a row needed to win
+     * @param quiet play without printing the board or the players' moves, e.g. for self-play
+     * @param random source of the players' random choices, only used by the thread playing the game
      */
-    public Game() {
-        this.grid = new Grid();
-        this.moveStrategy = new HashMap<>() {
-            {
-                put(Player.USER, new UserMove(grid));
-                put(Player.EASY, new EasyMove(grid));
-                put(Player.MEDIUM, new MediumMove(grid));
-                put(Player.HARD, new HardMove(grid));
-            }
-        };
-        if (moveStrategy.size() != Player.values().length) {
+    public Game(int size, int winLength, boolean quiet, RandomGenerator random) {
+        if (STRATEGIES.size() != Player.values().length) {
             throw new NoSuchElementException("Not all required player types have been implemented");
         }
+        this.grid = new Grid(size, winLength);
+        this.quiet = quiet;
+        this.random = random;
+        this.moves = new int[grid.getTotalSymbols()];
+    }
+
+    /**
+     * Create a new game with an empty NxN board and its own source of random moves.
+     * @param size dimensions of the square board
+     * @param winLength number of pieces in a row needed to win
+     * @param quiet play without printing the board or the players' moves, e.g. for self-play
+     */
+    public Game(int size, int winLength, boolean quiet) {
+        this(size, winLength, quiet, new SplittableRandom());
+    }
+
+    /**
+     * Create a new game with an empty NxN board, printing every move to the console.
+     * @param size dimensions of the square board
+     * @param winLength number of pieces in a row needed to win
+     */
+    public Game(int size, int winLength) {
+        this(size, winLength, false);
+    }
+
+    /**
+     * Create a new game with an empty {@value Grid#LENGTH}x{@value Grid#LENGTH} board.
+     */
+    public Game() {
+        this(Grid.LENGTH, Grid.LENGTH);
+    }
+
+    /**
+     * Set the most threads a computer player searches each move with, e.g. 1 while other games are played on every
+     * core, so moves do not compete for them.
+     * @param parallelism number of threads, 1 to search on the thread playing the game
+     */
+    public void setSearchParallelism(int parallelism) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive, not "+parallelism);
+        }
+        this.searchParallelism = parallelism;
+    }
+
+    /**
+     * Get the shared strategy that chooses a type of player's moves.
+     */
+    static Strategy getStrategy(Player player) {
+        return STRATEGIES.get(player);
     }
 
     /**
-     * Get a random element from a list.
-     * @return element, {@link Optional#empty()} if list is empty
+     * Choose an empty cell that would win the game for a piece at random, counting and then walking the board's
+     * win moves rather than collecting them, so no list is allocated.
+     * @param piece 'X' or 'O' piece to place
+     * @return cell index, -1 if the piece has no win move
      */
-    private static <E> Optional<E> chooseRandomElement(List<E> list) {
-        if (!list.isEmpty()) {
-            return Optional.of(list.get(random.nextInt(list.size())));
+    private static int chooseRandomWinMove(Position position, Piece piece, RandomGenerator random) {
+        int count = 0;
+        for (int i = position.nextWinMove(0, piece); i != -1; i = position.nextWinMove(i + 1, piece)) {
+            count++;
         }
-        return Optional.empty();
+        if (count == 0) return -1;
+        int move = position.nextWinMove(0, piece);
+        for (int k = random.nextInt(count); k > 0; k--) {
+            move = position.nextWinMove(move + 1, piece);
+        }
+        return move;
     }
 
     /**
      * A move generated by a user's input.
      */
-    public class UserMove extends Strategy {
+    public static class UserMove extends Strategy {
 
         /**
-         * Set the Strategy's name and grid to apply the move to.
+         * Set the Strategy's name.
          */
-        public UserMove(Grid grid) {
-            super("user", grid);
+        public UserMove() {
+            super("user");
         }
 
         /**
@@ -70,7 +143,7 @@ public class Game {
         private enum Reply {
             NOT_FREE("This cell is occupied! Choose another one!"),
             NOT_INT("You should enter numbers!"),
-            OUT_OF_RANGE("Coordinates should be from 1 to 3!");
+            OUT_OF_RANGE("Coordinates should be from 1 to %d!");
 
             private final String msg;
 
@@ -87,10 +160,10 @@ public class Game {
 
         /**
          * Loop until user inputs a valid move position.
-         * @return position of unoccupied cell
+         * @return cell index of unoccupied cell
          */
         @Override
-        int[] execute(Piece toPlace) {
+        int findMove(Position position, Piece toPlace, RandomGenerator random, int parallelism) {
             while (true) {
                 Scanner scan = new Scanner(System.in);
                 System.out.print("Enter the coordinates: ");
@@ -104,15 +177,14 @@ public class Game {
                     try {
                         int y = Integer.parseInt(indexes[0]) - 1;
                         int x = Integer.parseInt(indexes[1]) - 1;
-                        Cell cell = grid.getCell(y, x);
-                        if (cell.isEmpty()) { // check cell is unoccupied
-                            return new int[]{y, x};
+                        if (position.isEmpty(y, x)) { // check cell is unoccupied
+                            return y * position.getSize() + x;
                         }
                         System.out.println(Reply.NOT_FREE);
                     } catch (NumberFormatException e) {
                         System.out.println(Reply.NOT_INT);
                     } catch (ArrayIndexOutOfBoundsException e){
-                        System.out.println(Reply.OUT_OF_RANGE);
+                        System.out.printf(Reply.OUT_OF_RANGE+"%n", position.getSize());
                     }
                 }
             }
@@ -122,115 +194,327 @@ public class Game {
     /**
      * A randomly generated move.
      */
-    public class EasyMove extends Strategy {
+    public static class EasyMove extends Strategy {
 
         /**
-         * Set the Strategy's name and grid to apply the move to.
+         * Set the Strategy's name.
          */
-        public EasyMove(Grid grid) {
-            super("easy", grid);
+        public EasyMove() {
+            super("easy");
         }
 
         /**
-         * Choose a random empty position on the game board.
-         * @return position of unoccupied cell
+         * Choose a random empty position on the game board, walking to the chosen cell rather than listing them all.
+         * @return cell index of unoccupied cell
          */
-        private static int[] makeRandomMove(Grid grid) {
-            Optional<int[]> freeCell = chooseRandomElement(grid.getEmptyCells());
-            if (freeCell.isPresent()) {
-                return freeCell.get();
+        private static int makeRandomMove(Position position, RandomGenerator random) {
+            int count = position.getEmptyCount();
+            if (count == 0) {
+                throw new NoSuchElementException("Cannot make a move, there are no empty cells");
+            }
+            int cell = position.nextEmptyCell(0);
+            for (int k = random.nextInt(count); k > 0; k--) {
+                cell = position.nextEmptyCell(cell + 1);
             }
-            throw new NoSuchElementException("Cannot make a move, there are no empty cells");
+            return cell;
         }
 
         /**
          * Create a random move.
-         * @return position of random unoccupied cell
+         * @return cell index of random unoccupied cell
          */
         @Override
-        int[] execute(Piece toPlace) {
-            printPlayerType();
-            return makeRandomMove(grid);
+        int findMove(Position position, Piece toPlace, RandomGenerator random, int parallelism) {
+            return makeRandomMove(position, random);
         }
     }
 
     /**
      * A look-ahead 1 move.
      */
-    public class MediumMove extends Strategy {
+    public static class MediumMove extends Strategy {
 
         /**
-         * Set the Strategy's name and grid to apply the move to.
+         * Set the Strategy's name.
          */
-        public MediumMove(Grid grid) {
-            super("medium", grid);
+        public MediumMove() {
+            super("medium");
         }
 
         /**
          * Create a move to win the game for a piece or block the opponent from winning.
          * Otherwise, create a random move.
-         * @return position to place piece at
+         * @return cell index to place piece at
          */
         @Override
-        int[] execute(Piece toPlace) {
-            printPlayerType();
-            Map<Character, List<int[]>> winMoves = grid.getWinMoves();
-            Optional<int[]> move = chooseRandomElement(winMoves.get(toPlace.getSymbol()));
-            if (move.isPresent()) {
-                return move.get(); // make any moves to win the game
+        int findMove(Position position, Piece toPlace, RandomGenerator random, int parallelism) {
+            int move = chooseRandomWinMove(position, toPlace, random);
+            if (move != -1) {
+                return move; // make any moves to win the game
             }
-            move = chooseRandomElement(winMoves.get(toPlace.getOpposite().getSymbol()));
+            move = chooseRandomWinMove(position, toPlace.getOpposite(), random);
             // make any moves to stop opponent from winning
-            return move.orElseGet(() -> EasyMove.makeRandomMove(grid)); // otherwise choose randomly
+            return move != -1 ? move : EasyMove.makeRandomMove(position, random); // otherwise choose randomly
         }
     }
 
     /**
      * The optimal move for the current player.
      */
-    public class HardMove extends Strategy {
+    public static class HardMove extends Strategy {
+
+        /**
+         * Longest time to search for a move, in milliseconds.
+         */
+        private static final long TIME_LIMIT = 1000;
+        /**
+         * Most results kept in memory, unless the {@code tictactoe.hard.cache.entries} system property sets another,
+         * 0 to keep none.
+         */
+        private static final long CACHE_ENTRIES = Long.getLong("tictactoe.hard.cache.entries", 1 << 16);
+        /**
+         * Most memory used by the results kept, approximately, if the {@code tictactoe.hard.cache.bytes} system
+         * property sets a limit.
+         */
+        private static final long CACHE_BYTES = Long.getLong("tictactoe.hard.cache.bytes", 0);
+        /**
+         * Results of recent searches, shared by every game, null if the cache is turned off.
+         */
+        private static final SearchCache RESULTS = CACHE_ENTRIES > 0 ? new SearchCache(CACHE_ENTRIES, CACHE_BYTES) : null;
 
         /**
-         * Set the Strategy's name and grid to apply the move to.
+         * Set the Strategy's name.
          */
-        public HardMove(Grid grid) {
-            super("hard", grid);
+        public HardMove() {
+            super("hard");
+            if (RESULTS != null) getMetrics().setSearchCache(RESULTS);
         }
 
         /**
-         * Utilise the minimax algorithm to find the best possible move for the current player.
-         * @return position to place piece at
+         * Get the results of recent searches kept in memory.
+         * @return cache, null if it is turned off
+         */
+        static SearchCache getSearchCache() {
+            return RESULTS;
+        }
+
+        /**
+         * Look up the best possible move in the {@link OpeningBook}, then in the recent results kept in memory, then
+         * in the {@link PositionCache} if one is configured. If the board is in none of them, or was only searched
+         * until a time limit, utilise the minimax algorithm to find it instead, searching as deep as possible within
+         * {@value TIME_LIMIT}ms with the game's search parallelism, starting from any move found before, and cache the
+         * result.
+         * @return cell index to place piece at
          */
         @Override
-        int[] execute(Piece toPlace) {
-            printPlayerType();
-            Minimax minimax = new Minimax(grid);
-            return minimax.getBestMove();
+        int findMove(Position position, Piece toPlace, RandomGenerator random, int parallelism) {
+            Grid grid = position.getGrid(); // only read, the search works on its own copy
+            int move = OpeningBook.getInstance().getBestCell(grid);
+            if (move != -1) {
+                getMetrics().recordBookHit();
+                return move;
+            }
+            if (RESULTS != null) {
+                move = RESULTS.getBestCell(grid);
+                if (move != -1) return move; // counted by the cache
+            }
+            PositionCache cache = PositionCache.getInstance();
+            if (cache != null) {
+                move = cache.getBestCell(grid);
+                if (move != -1) {
+                    getMetrics().recordCacheHit();
+                    if (RESULTS != null) RESULTS.promote(grid, cache); // later lookups skip the file
+                    return move;
+                }
+            }
+            Minimax minimax = new Minimax(grid, Minimax.Evaluator.OPEN_LINES, TIME_LIMIT, Minimax.UNLIMITED, parallelism);
+            // the move of a search cut off by its time limit, if there was one
+            int hint = RESULTS != null ? RESULTS.getHintCell(grid) : -1;
+            if (hint == -1 && cache != null) hint = cache.getHintCell(grid);
+            minimax.setMoveHint(hint);
+            move = minimax.getBestCell();
+            getMetrics().recordSearch(minimax);
+            if (RESULTS != null) RESULTS.put(grid, minimax);
+            if (cache != null) cache.store(grid, minimax);
+            return move;
         }
     }
 
+    /**
+     * A strong move found by Monte Carlo tree search, for boards too large to search to the end.
+     */
+    public static class MctsMove extends Strategy {
+
+        /**
+         * Longest time to search for a move, in milliseconds, unless the {@code tictactoe.mcts.timeLimit}
+         * system property sets another.
+         */
+        private static final long TIME_LIMIT = Long.getLong("tictactoe.mcts.timeLimit", 1000);
+        /**
+         * Most playouts to play for a move, unless the {@code tictactoe.mcts.playouts} system property sets a limit.
+         */
+        private static final long PLAYOUT_LIMIT = Long.getLong("tictactoe.mcts.playouts", MonteCarlo.UNLIMITED);
+
+        /**
+         * Set the Strategy's name.
+         */
+        public MctsMove() {
+            super("mcts");
+        }
+
+        /**
+         * Play out random games guided by the medium player's rules with the game's search parallelism, for a
+         * second unless configured otherwise, continuing the tree kept from this player's last move when the
+         * opponent's reply is in it.
+         * @return cell index to place piece at
+         */
+        @Override
+        int findMove(Position position, Piece toPlace, RandomGenerator random, int parallelism) {
+            Grid grid = position.getGrid(); // only read, the search works on its own copy
+            MonteCarlo search = new MonteCarlo(grid, MonteCarlo.Rollout.GUIDED, TIME_LIMIT, PLAYOUT_LIMIT, parallelism);
+            int move = search.getBestCell(random);
+            getMetrics().recordSearch(search);
+            return move;
+        }
+    }
+
+    /**
+     * Get the number of moves played so far.
+     */
+    int getMoveCount() {
+        return grid.getTotalSymbols() - grid.getEmptyCount();
+    }
+
+    /**
+     * Get a move played so far.
+     * @param i move number, from 0
+     * @return cell index, left-to-right, top-to-bottom
+     */
+    int getMove(int i) {
+        if (i < 0 || i >= getMoveCount()) {
+            throw new IndexOutOfBoundsException("Only "+getMoveCount()+" moves have been played");
+        }
+        return moves[i];
+    }
+
+    /**
+     * Dimensions of the square board.
+     */
+    int getSize() {
+        return grid.getSize();
+    }
+
+    /**
+     * Number of pieces in a row needed to win.
+     */
+    int getWinLength() {
+        return grid.getWinLength();
+    }
+
+    /**
+     * Get the current state of the game.
+     */
+    public Grid.State getState() {
+        return grid.getState();
+    }
+
+    /**
+     * Take a snapshot of the board.
+     */
+    public Position getPosition() {
+        return new Position(grid);
+    }
+
+    /**
+     * Get the piece placed by the next move, X goes first.
+     */
+    Piece nextPiece() {
+        return grid.isXTurn() ? Grid.X_PIECE : Grid.O_PIECE;
+    }
+
+    /**
+     * Choose the next move with a player's strategy, without playing it.
+     * @param player user/ai strategy to choose the move
+     * @return cell index of the move, left-to-right, top-to-bottom
+     */
+    public int chooseCell(Player player) {
+        return STRATEGIES.get(player).execute(new Position(grid), nextPiece(), random, searchParallelism);
+    }
+
+    /**
+     * Choose the next move with a player's strategy, without playing it, see {@link #chooseCell(Player)}.
+     * @param player user/ai strategy to choose the move
+     * @return {y, x} co-ordinate of the move
+     */
+    public int[] chooseMove(Player player) {
+        return grid.toPosition(chooseCell(player));
+    }
+
+    /**
+     * Place the next piece, X goes first.
+     * @param index cell index of an empty cell, left-to-right, top-to-bottom
+     * @throws ArrayIndexOutOfBoundsException if the index is not on the board
+     * @throws IllegalStateException if the game is over or the cell is occupied
+     */
+    public void move(int index) {
+        int count = getMoveCount();
+        grid.play(index, nextPiece());
+        moves[count] = index;
+    }
+
+    /**
+     * Place the next piece, X goes first, see {@link #move(int)}.
+     * @param position {y, x} co-ordinate of an empty cell
+     * @throws ArrayIndexOutOfBoundsException if the co-ordinate is not on the board
+     * @throws IllegalStateException if the game is over or the cell is occupied
+     */
+    public void move(int[] position) {
+        move(grid.toIndex(position[0], position[1]));
+    }
+
     /**
      * Play a game of tic-tac-toe
      * @param playerX user/ai strategy to control X
      * @param playerO user/ai strategy to control O
+     * @return final state of the game
      */
-    public void play(Player playerX, Player playerO) {
-        System.out.println(grid);
+    public Grid.State play(Player playerX, Player playerO) {
+        return play(playerX, playerO, null);
+    }
+
+    /**
+     * Play a game of tic-tac-toe, timing each player's moves.
+     * @param playerX user/ai strategy to control X
+     * @param playerO user/ai strategy to control O
+     * @param moveNanos if not null, filled with the nanoseconds each move took to choose, in the order played
+     * @return final state of the game
+     */
+    Grid.State play(Player playerX, Player playerO, long[] moveNanos) {
+        GameEvents.Game event = new GameEvents.Game();
+        event.begin();
+        if (!quiet) System.out.println(grid);
         grid.evaluateState();
+        int moves = 0;
         while (grid.getState() == Grid.State.UNFINISHED) {
-            Player current;
-            Piece nextPiece;
-            if (grid.isXTurn()) {
-                current = playerX;
-                nextPiece = Grid.X_PIECE;
-            } else {
-                current = playerO;
-                nextPiece = Grid.O_PIECE;
-            }
-            int[] position = moveStrategy.get(current).execute(nextPiece); // find move location
-            grid.setCell(position[0], position[1], nextPiece); // apply move
-            System.out.println(grid);
+            Player current = grid.isXTurn() ? playerX : playerO;
+            if (!quiet && current != Player.USER) STRATEGIES.get(current).printPlayerType();
+            long start = System.nanoTime();
+            int cell = chooseCell(current); // find move location
+            if (moveNanos != null) moveNanos[moves] = System.nanoTime() - start;
+            moves++;
+            move(cell); // apply move
+            if (!quiet) System.out.println(grid);
+        }
+        if (!quiet) System.out.println(grid.getState());
+        if (event.shouldCommit()) {
+            event.playerX = playerX.name();
+            event.playerO = playerO.name();
+            event.size = grid.getSize();
+            event.winLength = grid.getWinLength();
+            event.moves = moves;
+            event.state = grid.getState().name();
+            event.commit();
         }
-        System.out.println(grid.getState());
+        return grid.getState();
     }
 }
@@ -0,0 +1,484 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.EnumMap;
+import java.util.Map;
+
+import tictactoe.Menu.Player;
+
+/**
+ * A compact binary file of finished games, written by an append-only {@link Writer} and replayed by a {@link Reader}.
+ * <p>
+ * File layout (big-endian): a header of {@link #MAGIC} and {@link #VERSION}, followed by one record per game.
+ * A record holds the board size, the win length, the player types of 'X' (high nibble) and 'O' (low nibble) as
+ * {@link Player} ordinals, the number of moves, then the cell index of each move in the order played. The number
+ * of moves is one byte for boards of under 256 cells, otherwise two. Moves are packed two to a byte (first move in
+ * the high nibble) on boards of up to 16 cells, one byte each on boards of up to 256 cells, otherwise two bytes
+ * each, so a 3x3 game takes at most 9 bytes.
+ * <p>
+ * Records are only ever appended, so if a write is cut short only the last record is lost: readers stop before it
+ * and the next writer removes it.
+ */
+public class GameArchive {
+
+    /**
+     * First bytes of an archive file, "TTTR".
+     */
+    private static final int MAGIC = 0x54545452;
+    /**
+     * Version of the file layout.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Size of the file header in bytes.
+     */
+    private static final int HEADER_BYTES = 2 * Integer.BYTES;
+    /**
+     * Largest board size a record can hold.
+     */
+    private static final int MAX_SIZE = 255;
+    /**
+     * Bytes of the largest possible record, a full board of {@value MAX_SIZE}x{@value MAX_SIZE}.
+     */
+    private static final int MAX_RECORD_BYTES = recordBytes(MAX_SIZE * MAX_SIZE, MAX_SIZE * MAX_SIZE);
+    /**
+     * Every player type, indexed by ordinal.
+     */
+    private static final Player[] PLAYERS = Player.values();
+
+    private GameArchive() {
+    }
+
+    /**
+     * Count the bytes of a record.
+     * @param cells number of cells on the board
+     * @param moves number of moves played
+     */
+    private static int recordBytes(int cells, int moves) {
+        int countBytes = cells < 256 ? 1 : 2;
+        int moveBytes = cells <= 16 ? (moves + 1) / 2 : cells <= 256 ? moves : 2 * moves;
+        return 3 + countBytes + moveBytes;
+    }
+
+    /**
+     * Appends games to the end of an archive file, creating it if needed. Games can be appended from several
+     * threads at once, and are buffered until the buffer fills or the writer is flushed or closed.
+     */
+    public static class Writer implements AutoCloseable {
+
+        /**
+         * Bytes of records buffered before they are written, enough for the largest record.
+         */
+        private static final int BUFFER_SIZE = Math.max(1 << 16, MAX_RECORD_BYTES);
+
+        private final FileChannel channel;
+        private final ByteBuffer buffer = ByteBuffer.allocateDirect(BUFFER_SIZE);
+        /**
+         * Number of games appended by this writer.
+         */
+        private long games;
+
+        /**
+         * Open an archive for appending, writing the file header if the file is new or empty.
+         * An existing archive is read through first, and a last record that was cut short is removed.
+         * @throws IllegalStateException if the file is not an archive
+         */
+        public Writer(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.READ,
+                    StandardOpenOption.WRITE);
+            try {
+                if (channel.size() == 0) {
+                    buffer.putInt(MAGIC).putInt(VERSION);
+                } else {
+                    long end;
+                    try (Reader reader = new Reader(path)) {
+                        while (reader.next()) {
+                            // find the end of the last whole record
+                        }
+                        end = reader.getOffset();
+                    }
+                    channel.truncate(end);
+                }
+                channel.position(channel.size());
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Append a finished game.
+         * @param game game to record, its moves are read from the board
+         * @param playerX player type that controlled 'X'
+         * @param playerO player type that controlled 'O'
+         */
+        public synchronized void append(Game game, Player playerX, Player playerO) throws IOException {
+            int size = game.getSize();
+            if (size > MAX_SIZE) {
+                throw new IllegalArgumentException("Only boards of up to "+MAX_SIZE+"x"+MAX_SIZE+" can be recorded");
+            }
+            int cells = size * size;
+            int count = game.getMoveCount();
+            if (buffer.remaining() < recordBytes(cells, count)) flush();
+            buffer.put((byte) size)
+                    .put((byte) game.getWinLength())
+                    .put((byte) (playerX.ordinal() << 4 | playerO.ordinal()));
+            if (cells < 256) {
+                buffer.put((byte) count);
+            } else {
+                buffer.putShort((short) count);
+            }
+            if (cells <= 16) {
+                for (int i = 0; i < count; i += 2) {
+                    int second = i + 1 < count ? game.getMove(i + 1) : 0;
+                    buffer.put((byte) (game.getMove(i) << 4 | second));
+                }
+            } else if (cells <= 256) {
+                for (int i = 0; i < count; i++) {
+                    buffer.put((byte) game.getMove(i));
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    buffer.putShort((short) game.getMove(i));
+                }
+            }
+            games++;
+        }
+
+        /**
+         * Get the number of games appended by this writer.
+         */
+        public synchronized long getGameCount() {
+            return games;
+        }
+
+        /**
+         * Write every buffered game to the file.
+         */
+        public synchronized void flush() throws IOException {
+            buffer.flip();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            buffer.clear();
+        }
+
+        /**
+         * Write every buffered game and close the file.
+         */
+        @Override
+        public synchronized void close() throws IOException {
+            try (channel) {
+                flush();
+            }
+        }
+    }
+
+    /**
+     * Check a file starts with an archive header.
+     * @throws IllegalStateException if it does not
+     */
+    private static void checkHeader(FileChannel channel, Path path) throws IOException {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining() && channel.read(header, header.position()) > 0) {
+            // read the whole header
+        }
+        if (header.hasRemaining() || header.getInt(0) != MAGIC || header.getInt(4) != VERSION) {
+            throw new IllegalStateException(path+" is not a valid game archive");
+        }
+    }
+
+    /**
+     * Reads the games of an archive file one at a time, memory-mapping it a window at a time.
+     * Each game is decoded into reused arrays and replayed on a reused board, so reading allocates nothing
+     * for each game, e.g. to re-score a large archive after a player changes:
+     * <pre>{@code
+     * try (GameArchive.Reader reader = new GameArchive.Reader(path)) {
+     *     while (reader.next()) {
+     *         for (int i = 0; i < reader.getMoveCount(); i++) {
+     *             Grid before = reader.replay(i);
+     *             ...
+     *         }
+     *     }
+     * }
+     * }</pre>
+     */
+    public static class Reader implements AutoCloseable {
+
+        /**
+         * Bytes of the file mapped at once.
+         */
+        private static final int WINDOW_SIZE = 1 << 26;
+
+        private final FileChannel channel;
+        /**
+         * Length of the file when it was opened, later games are not read.
+         */
+        private final long fileSize;
+        /**
+         * Mapped part of the file being read.
+         */
+        private MappedByteBuffer window;
+        /**
+         * File offset of the start of the {@link #window}.
+         */
+        private long windowStart;
+        private int size;
+        private int winLength;
+        private Player playerX;
+        private Player playerO;
+        /**
+         * Cell index of each move of the current game, only the first {@link #moveCount} are used.
+         */
+        private int[] moves = new int[Grid.TOTAL_SYMBOLS];
+        private int moveCount;
+        /**
+         * Reused board holding the current game, replayed up to {@link #played} moves.
+         */
+        private Grid board;
+        private int played;
+        /**
+         * Number of games read.
+         */
+        private long games;
+
+        /**
+         * Open an archive for reading.
+         * @throws IllegalStateException if the file is not an archive
+         */
+        public Reader(Path path) throws IOException {
+            this.channel = FileChannel.open(path, StandardOpenOption.READ);
+            try {
+                checkHeader(channel, path);
+                this.fileSize = channel.size();
+                map(HEADER_BYTES);
+            } catch (IOException | RuntimeException e) {
+                channel.close();
+                throw e;
+            }
+        }
+
+        /**
+         * Map the window of the file starting at an offset.
+         */
+        private void map(long start) throws IOException {
+            windowStart = start;
+            window = channel.map(FileChannel.MapMode.READ_ONLY, start, Math.min(WINDOW_SIZE, fileSize - start));
+        }
+
+        /**
+         * Move on to the next game.
+         * @return false if there are no more whole games
+         * @throws IllegalStateException if a record is not valid
+         */
+        public boolean next() throws IOException {
+            rewind(0);
+            if (window.remaining() < MAX_RECORD_BYTES && windowStart + window.limit() < fileSize) {
+                map(windowStart + window.position()); // the next record may cross the end of the window
+            }
+            ByteBuffer in = window;
+            int start = in.position();
+            if (in.remaining() < 3) return false;
+            int nextSize = in.get() & 0xFF;
+            int nextWinLength = in.get() & 0xFF;
+            int players = in.get() & 0xFF;
+            int cells = nextSize * nextSize;
+            if (nextSize == 0 || nextWinLength == 0 || nextWinLength > nextSize
+                    || players >>> 4 >= PLAYERS.length || (players & 0xF) >= PLAYERS.length) {
+                throw new IllegalStateException("Invalid game record at byte "+(windowStart + start));
+            }
+            if (in.remaining() < (cells < 256 ? 1 : 2)) {
+                in.position(start);
+                return false; // the last record was cut short
+            }
+            int count = cells < 256 ? in.get() & 0xFF : in.getShort() & 0xFFFF;
+            if (count > cells) {
+                throw new IllegalStateException("Invalid game record at byte "+(windowStart + start));
+            }
+            if (in.remaining() < recordBytes(cells, count) - (in.position() - start)) {
+                in.position(start);
+                return false; // the last record was cut short
+            }
+            if (moves.length < count) moves = new int[cells];
+            if (cells <= 16) {
+                for (int i = 0; i < count; i += 2) {
+                    int pair = in.get() & 0xFF;
+                    moves[i] = pair >>> 4;
+                    if (i + 1 < count) moves[i + 1] = pair & 0xF;
+                }
+            } else if (cells <= 256) {
+                for (int i = 0; i < count; i++) {
+                    moves[i] = in.get() & 0xFF;
+                }
+            } else {
+                for (int i = 0; i < count; i++) {
+                    moves[i] = in.getShort() & 0xFFFF;
+                }
+            }
+            for (int i = 0; i < count; i++) {
+                if (moves[i] >= cells) {
+                    throw new IllegalStateException("Invalid game record at byte "+(windowStart + start));
+                }
+            }
+            if (board == null || nextSize != size || nextWinLength != winLength) {
+                board = new Grid(nextSize, nextWinLength);
+            }
+            size = nextSize;
+            winLength = nextWinLength;
+            playerX = PLAYERS[players >>> 4];
+            playerO = PLAYERS[players & 0xF];
+            moveCount = count;
+            games++;
+            return true;
+        }
+
+        /**
+         * Undo moves on the reused board until only some are left.
+         */
+        private void rewind(int moves) {
+            while (played > moves) {
+                board.undo(this.moves[--played]);
+            }
+        }
+
+        /**
+         * Replay the start of the current game on a reused board, which is only valid until the next call.
+         * Replaying forward from the last call only plays the new moves, so a game can be stepped through cheaply.
+         * @param moves number of moves to play, from 0 to {@link #getMoveCount()}
+         * @return board after the moves, which must not be modified
+         * @throws IllegalStateException if the game has a move on an occupied cell or after the game ended
+         */
+        public Grid replay(int moves) {
+            if (moves < 0 || moves > moveCount) {
+                throw new IndexOutOfBoundsException("The game has "+moveCount+" moves, not "+moves);
+            }
+            rewind(moves);
+            while (played < moves) {
+                int move = this.moves[played];
+                board.play(move, played % 2 == 0 ? Grid.X_PIECE : Grid.O_PIECE);
+                played++;
+            }
+            return board;
+        }
+
+        /**
+         * Replay the whole of the current game.
+         * @return final state of the game
+         */
+        public Grid.State replay() {
+            return replay(moveCount).getState();
+        }
+
+        /**
+         * Dimensions of the current game's board.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Number of pieces in a row needed to win the current game.
+         */
+        public int getWinLength() {
+            return winLength;
+        }
+
+        /**
+         * Player type that controlled 'X' in the current game.
+         */
+        public Player getPlayerX() {
+            return playerX;
+        }
+
+        /**
+         * Player type that controlled 'O' in the current game.
+         */
+        public Player getPlayerO() {
+            return playerO;
+        }
+
+        /**
+         * Number of moves played in the current game.
+         */
+        public int getMoveCount() {
+            return moveCount;
+        }
+
+        /**
+         * Get a move of the current game.
+         * @param i move number, from 0
+         * @return cell index, left-to-right, top-to-bottom
+         */
+        public int getMove(int i) {
+            if (i < 0 || i >= moveCount) {
+                throw new IndexOutOfBoundsException("The game has "+moveCount+" moves, not "+(i + 1));
+            }
+            return moves[i];
+        }
+
+        /**
+         * Get the file offset just after the last game read.
+         */
+        public long getOffset() {
+            return windowStart + window.position();
+        }
+
+        /**
+         * Get the number of games read so far.
+         */
+        public long getGameCount() {
+            return games;
+        }
+
+        @Override
+        public void close() throws IOException {
+            channel.close();
+        }
+    }
+
+    /**
+     * Replay every game of an archive, printing the results and, for games with the default rules, how often each
+     * player type chose a move the {@link OpeningBook} rates as best.
+     * @param args path of the archive
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 1) {
+            System.out.println("usage: archive_file");
+            return;
+        }
+        OpeningBook book = OpeningBook.getInstance();
+        long[] results = new long[Grid.State.values().length];
+        Map<Player, long[]> scores = new EnumMap<>(Player.class); // moves rated, then best moves
+        long start = System.nanoTime();
+        long games;
+        try (Reader reader = new Reader(Paths.get(args[0]))) {
+            while (reader.next()) {
+                boolean isDefault = reader.getSize() == Grid.LENGTH && reader.getWinLength() == Grid.LENGTH;
+                for (int i = 0; isDefault && i < reader.getMoveCount(); i++) {
+                    Player player = i % 2 == 0 ? reader.getPlayerX() : reader.getPlayerO();
+                    long[] score = scores.computeIfAbsent(player, p -> new long[2]);
+                    score[0]++;
+                    if ((book.getBestMoves(reader.replay(i)) & 1 << reader.getMove(i)) != 0) score[1]++;
+                }
+                results[reader.replay().ordinal()]++;
+            }
+            games = reader.getGameCount();
+        }
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("Games:    %d in %.2fs (%.0f games/s)%n", games, seconds, seconds == 0 ? 0 : games / seconds);
+        for (Grid.State state : new Grid.State[]{Grid.State.X_WINS, Grid.State.O_WINS, Grid.State.DRAW}) {
+            System.out.printf("%-9s %d%n", state+":", results[state.ordinal()]);
+        }
+        for (Map.Entry<Player, long[]> entry : scores.entrySet()) {
+            long[] score = entry.getValue();
+            System.out.printf("%s best moves: %d of %d (%.2f%%)%n", entry.getKey(), score[1], score[0],
+                    100.0 * score[1] / score[0]);
+        }
+    }
+}
@@ -0,0 +1,119 @@
+package tictactoe;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Enabled;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder events for the lifecycle of games, moves and searches, so a recording shows which positions
+ * and strategies caused a slow move next to the GC and JIT activity at the time.
+ * Every event is off unless a recording turns it on, e.g. with the {@code tictactoe.jfc} settings profile, and
+ * events are only filled in when they will be committed, so they cost almost nothing otherwise.
+ */
+final class GameEvents {
+
+    private GameEvents() {
+    }
+
+    /**
+     * A whole game, from its first move to the end, with the players and the result.
+     */
+    @Name("tictactoe.Game")
+    @Label("Game")
+    @Category("Tic-Tac-Toe")
+    @Description("A game from start to finish")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Game extends Event {
+        @Label("Player X")
+        String playerX;
+        @Label("Player O")
+        String playerO;
+        @Label("Board Size")
+        int size;
+        @Label("Win Length")
+        int winLength;
+        @Label("Moves")
+        int moves;
+        @Label("Result")
+        String state;
+    }
+
+    /**
+     * One move chosen by a {@link Strategy}.
+     */
+    @Name("tictactoe.Move")
+    @Label("Move")
+    @Category("Tic-Tac-Toe")
+    @Description("A move chosen by a player's strategy")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Move extends Event {
+        @Label("Strategy")
+        String strategy;
+        @Label("Position")
+        @Description("Board before the move, left-to-right, top-to-bottom, '_' for an empty cell")
+        String position;
+        @Label("Piece")
+        char piece;
+        @Label("Row")
+        @Description("Row of the chosen cell, from 1")
+        int row;
+        @Label("Column")
+        @Description("Column of the chosen cell, from 1")
+        int column;
+
+        /**
+         * Fill in and commit the event, if the recording wants it.
+         */
+        void commitMove(String strategy, Position position, Piece piece, int move) {
+            if (!shouldCommit()) return;
+            this.strategy = strategy;
+            this.position = position.getSymbols().replace(' ', '_');
+            this.piece = piece.getSymbol();
+            if (move >= 0) {
+                this.row = move / position.getSize() + 1;
+                this.column = move % position.getSize() + 1;
+            }
+            commit();
+        }
+    }
+
+    /**
+     * One {@link Minimax} search, with the work it took.
+     */
+    @Name("tictactoe.Search")
+    @Label("Minimax Search")
+    @Category("Tic-Tac-Toe")
+    @Description("A minimax search for the best move of a position")
+    @Enabled(false)
+    @StackTrace(false)
+    static final class Search extends Event {
+        @Label("Position")
+        @Description("Board searched, left-to-right, top-to-bottom, '_' for an empty cell")
+        String position;
+        @Label("Move")
+        @Description("Cell index of the best move, -1 if the game is over")
+        int move;
+        @Label("Value")
+        @Description("Value of the position for 'X'")
+        int value;
+        @Label("Depth")
+        @Description("Deepest completed iteration")
+        int depth;
+        @Label("Nodes")
+        long nodes;
+        @Label("Cutoffs")
+        long cutoffs;
+        @Label("Table Probes")
+        long probes;
+        @Label("Table Hits")
+        long hits;
+        @Label("Parallelism")
+        int parallelism;
+    }
+}
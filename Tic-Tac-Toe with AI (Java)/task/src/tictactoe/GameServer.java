@@ -0,0 +1,367 @@
+package tictactoe;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.lang.reflect.Method;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import tictactoe.Menu.Player;
+
+/**
+ * Hosts games over TCP, one game at a time per connection, using a line-based text protocol.
+ * Each connection is served by its own virtual thread when the JVM has them (Java 21 and later),
+ * otherwise by a platform thread with a small stack, so many idle connections stay cheap.
+ * <p>
+ * Commands, one per line, case-insensitive:
+ * <ul>
+ *     <li>{@code START player_X_mode player_O_mode [size [win_length]]} starts a new game, where the client
+ *     moves for any {@code USER} player and the server moves for every computer player, on a board of up to
+ *     {@value #MAX_SIZE}x{@value #MAX_SIZE}</li>
+ *     <li>{@code MOVE row column} plays the client's move (from 1), followed by the server's reply</li>
+ *     <li>{@code STATE} shows the game</li>
+ *     <li>{@code STATS} shows the server's move latency</li>
+ *     <li>{@code QUIT} closes the connection</li>
+ * </ul>
+ * Games are shown as {@code OK symbols state}, e.g. {@code OK X___O____ UNFINISHED} with '_' for an empty cell,
+ * and failed commands reply with {@code ERROR message}.
+ */
+public class GameServer implements AutoCloseable {
+
+    /**
+     * Default port to listen on.
+     */
+    public static final int DEFAULT_PORT = 4815;
+    /**
+     * Connections waiting to be accepted before new ones are refused.
+     */
+    private static final int BACKLOG = 4096;
+    /**
+     * Stack size of platform session threads, each only needs a shallow stack to parse commands and play moves.
+     */
+    private static final long SESSION_STACK_SIZE = 256 * 1024;
+    /**
+     * Longest command accepted, longer lines are rejected without being held in memory.
+     */
+    private static final int MAX_LINE_LENGTH = 256;
+    /**
+     * Largest board a game can be played on, as large as {@link PositionAnalyzer} reads.
+     */
+    static final int MAX_SIZE = 32;
+    /**
+     * Most games between two computer players played at once, as each searches on every core for every move.
+     */
+    private static final int MAX_COMPUTER_GAMES = Runtime.getRuntime().availableProcessors();
+    /**
+     * Message for invalid input.
+     */
+    private static final String ERROR = "Bad parameters!";
+    /**
+     * Milliseconds between latency reports printed by {@link #main(String[])}.
+     */
+    private static final long REPORT_INTERVAL = 10_000;
+
+    private final ServerSocket serverSocket;
+    /**
+     * Runs every session.
+     */
+    private final ExecutorService sessions;
+    /**
+     * Time taken to reply to each {@code MOVE} command, including the server's own moves.
+     */
+    private final LatencyHistogram moveLatency = new LatencyHistogram();
+    /**
+     * Number of open connections.
+     */
+    private final AtomicInteger connections = new AtomicInteger();
+    /**
+     * Socket of every open connection, so closing the server can close them, as a session blocked reading its
+     * socket does not notice being interrupted.
+     */
+    private final Set<Socket> sockets = ConcurrentHashMap.newKeySet();
+    /**
+     * Permits for games between two computer players, taken for as long as the game is played.
+     */
+    private final Semaphore computerGames = new Semaphore(MAX_COMPUTER_GAMES);
+
+    /**
+     * Start listening for connections.
+     * @param port port to listen on, 0 for any free port
+     */
+    public GameServer(int port) throws IOException {
+        this.serverSocket = new ServerSocket(port, BACKLOG);
+        this.sessions = newSessionExecutor();
+        Thread acceptor = new Thread(this::acceptLoop, "game-server-acceptor");
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    /**
+     * Create an executor running each task on a new virtual thread if the JVM supports them,
+     * looked up reflectively so the server still runs on Java 17.
+     */
+    private static ExecutorService newSessionExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            AtomicInteger count = new AtomicInteger();
+            return Executors.newCachedThreadPool(task -> {
+                Thread thread = new Thread(null, task, "game-session-"+count.incrementAndGet(), SESSION_STACK_SIZE);
+                thread.setDaemon(true);
+                return thread;
+            });
+        }
+    }
+
+    /**
+     * Get the port the server is listening on.
+     */
+    public int getPort() {
+        return serverSocket.getLocalPort();
+    }
+
+    /**
+     * Get the number of open connections.
+     */
+    public int getConnectionCount() {
+        return connections.get();
+    }
+
+    /**
+     * Estimate a percentile of the time taken to reply to a move.
+     * @param percentile from 0 to 100
+     * @return latency in nanoseconds
+     */
+    public long getMoveLatency(double percentile) {
+        return moveLatency.percentile(percentile);
+    }
+
+    /**
+     * Accept connections until the server is closed, starting a session for each.
+     */
+    private void acceptLoop() {
+        while (!serverSocket.isClosed()) {
+            try {
+                Socket socket = serverSocket.accept();
+                sessions.execute(() -> serve(socket));
+            } catch (IOException e) {
+                if (serverSocket.isClosed()) return;
+            }
+        }
+    }
+
+    /**
+     * Answer a connection's commands until it quits or disconnects.
+     */
+    private void serve(Socket socket) {
+        connections.incrementAndGet();
+        sockets.add(socket);
+        try (socket;
+             BufferedReader in = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+             PrintWriter out = new PrintWriter(new OutputStreamWriter(socket.getOutputStream(), StandardCharsets.UTF_8), true)) {
+            if (serverSocket.isClosed()) return; // closed while the session was starting, before it was tracked
+            Session session = new Session();
+            StringBuilder line = new StringBuilder(MAX_LINE_LENGTH);
+            while (readLine(in, line)) {
+                if (line.length() > MAX_LINE_LENGTH) {
+                    out.println("ERROR Command is too long");
+                    continue;
+                }
+                String reply = session.handle(line.toString().trim().toUpperCase());
+                if (reply == null) {
+                    out.println("BYE");
+                    break;
+                }
+                out.println(reply);
+            }
+        } catch (SocketException ignored) {
+            // the client disconnected
+        } catch (IOException e) {
+            System.err.println("Session failed: "+e.getMessage());
+        } finally {
+            sockets.remove(socket);
+            connections.decrementAndGet();
+        }
+    }
+
+    /**
+     * Read a line of up to {@value #MAX_LINE_LENGTH} characters, skipping the rest of a longer line as it arrives,
+     * so an endless line cannot fill the heap.
+     * @param line cleared and filled with the line, one character longer than the limit if the line was too long
+     * @return false if the connection closed before a line started
+     */
+    private static boolean readLine(BufferedReader in, StringBuilder line) throws IOException {
+        line.setLength(0);
+        int c = in.read();
+        if (c == -1) return false;
+        for (; c != -1 && c != '\n'; c = in.read()) {
+            if (line.length() <= MAX_LINE_LENGTH) line.append((char) c);
+        }
+        if (line.length() > 0 && line.charAt(line.length() - 1) == '\r') line.setLength(line.length() - 1);
+        return true;
+    }
+
+    /**
+     * The game played over one connection.
+     */
+    private class Session {
+        private Game game;
+        private Player playerX;
+        private Player playerO;
+
+        /**
+         * Carry out a command.
+         * @param command trimmed, upper case line
+         * @return reply to send, null to close the connection
+         */
+        private String handle(String command) {
+            String[] parameters = command.split("\\s+");
+            try {
+                return switch (parameters[0]) {
+                    case "START" -> start(parameters);
+                    case "MOVE" -> move(parameters);
+                    case "STATE" -> game != null ? show() : "ERROR No game started";
+                    case "STATS" -> stats();
+                    case "QUIT" -> null;
+                    default -> "ERROR Unknown command";
+                };
+            } catch (IllegalArgumentException e) {
+                return "ERROR "+ERROR;
+            }
+        }
+
+        /**
+         * Start a new game, then let the server move if a computer player goes first.
+         */
+        private String start(String[] parameters) {
+            if (parameters.length < 3 || parameters.length > 5) return "ERROR "+ERROR;
+            Player x = Player.valueOf(parameters[1]);
+            Player o = Player.valueOf(parameters[2]);
+            // optional board size and win length, defaulting to the classic game
+            int size = parameters.length > 3 ? Integer.parseInt(parameters[3]) : Grid.LENGTH;
+            int winLength = parameters.length > 4 ? Integer.parseInt(parameters[4]) : Grid.defaultWinLength(size);
+            if (size < 1 || size > MAX_SIZE) return "ERROR Board size must be from 1 to "+MAX_SIZE;
+            if (winLength < 1 || winLength > size) return "ERROR Win length must be from 1 to "+size;
+            boolean computerGame = x != Player.USER && o != Player.USER;
+            if (computerGame && !computerGames.tryAcquire()) return "ERROR Too many computer games, try again later";
+            try {
+                game = new Game(size, winLength, true);
+                playerX = x;
+                playerO = o;
+                playComputerMoves();
+                return show();
+            } finally {
+                if (computerGame) computerGames.release();
+            }
+        }
+
+        /**
+         * Play the client's move, then the server's moves until the client is next to move.
+         */
+        private String move(String[] parameters) {
+            if (game == null) return "ERROR No game started";
+            if (parameters.length != 3) return "ERROR You should enter numbers!";
+            if (game.getState() != Grid.State.UNFINISHED) return "ERROR The game is over";
+            if (currentPlayer() != Player.USER) return "ERROR It is not your turn";
+            long start = System.nanoTime();
+            try {
+                int y = Integer.parseInt(parameters[1]) - 1;
+                int x = Integer.parseInt(parameters[2]) - 1;
+                game.move(new int[]{y, x});
+            } catch (NumberFormatException e) {
+                return "ERROR You should enter numbers!";
+            } catch (ArrayIndexOutOfBoundsException e) {
+                return "ERROR Coordinates should be from 1 to "+game.getPosition().getSize()+"!";
+            } catch (IllegalStateException e) {
+                return "ERROR This cell is occupied! Choose another one!";
+            }
+            playComputerMoves();
+            String reply = show();
+            moveLatency.record(System.nanoTime() - start);
+            return reply;
+        }
+
+        /**
+         * Play moves for computer players until the game ends or the client is next to move.
+         */
+        private void playComputerMoves() {
+            while (game.getState() == Grid.State.UNFINISHED && currentPlayer() != Player.USER) {
+                game.move(game.chooseCell(currentPlayer()));
+            }
+        }
+
+        /**
+         * Get the player who makes the next move.
+         */
+        private Player currentPlayer() {
+            return game.nextPiece() == Grid.X_PIECE ? playerX : playerO;
+        }
+
+        /**
+         * Describe the game as {@code OK symbols state}.
+         */
+        private String show() {
+            return "OK "+game.getPosition().getSymbols().replace(' ', '_')+" "+game.getState().name();
+        }
+
+        /**
+         * Describe the server's move latency and load.
+         */
+        private String stats() {
+            return "OK "+GameServer.this.stats();
+        }
+    }
+
+    /**
+     * Summarise the number of moves replied to, their latency and the open connections.
+     */
+    private String stats() {
+        return String.format("moves=%d p50=%.1fus p99=%.1fus connections=%d", moveLatency.count(),
+                moveLatency.percentile(50) / 1e3, moveLatency.percentile(99) / 1e3, connections.get());
+    }
+
+    /**
+     * Stop accepting connections and close every session, closing their sockets so sessions waiting for a command
+     * end at once.
+     */
+    @Override
+    public void close() throws IOException {
+        serverSocket.close();
+        for (Socket socket : sockets) {
+            try {
+                socket.close();
+            } catch (IOException ignored) {
+                // the session is ending anyway
+            }
+        }
+        sessions.shutdownNow();
+    }
+
+    /**
+     * Run a server until the process is stopped, printing its latency every {@value REPORT_INTERVAL}ms.
+     * @param args port to listen on, defaults to {@value DEFAULT_PORT}
+     */
+    public static void main(String[] args) throws IOException, InterruptedException {
+        int port = args.length > 0 ? Integer.parseInt(args[0]) : DEFAULT_PORT;
+        OpeningBook.getInstance(); // load the book before the first game
+        try (GameServer server = new GameServer(port)) {
+            System.out.println("Listening on port "+server.getPort());
+            while (true) {
+                Thread.sleep(REPORT_INTERVAL);
+                System.out.println(server.stats());
+            }
+        }
+    }
+}
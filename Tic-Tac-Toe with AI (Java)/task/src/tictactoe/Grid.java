@@ -1,7 +1,6 @@
 package tictactoe;
 
 import java.util.*;
-import java.util.concurrent.atomic.AtomicInteger;
 
 
 /**
@@ -10,72 +9,54 @@ import java.util.concurrent.atomic.AtomicInteger;
 public class Grid {
 
     /**
-     * Dimensions of the NxN square table.
+     * Dimensions of the default NxN square table.
      */
     public static final int LENGTH = 3;
     /**
-     * Total number of cells in the {@link #table}.
+     * Total number of cells in the default table.
      */
     public static final int TOTAL_SYMBOLS = LENGTH * LENGTH;
     /**
-     * ASCII border for the top and bottom of the grid.
+     * Longest win length used by default, as in gomoku.
      */
-    private static final String BORDER = "-".repeat(TOTAL_SYMBOLS);
+    public static final int MAX_DEFAULT_WIN_LENGTH = 5;
     /**
      * Reference of the 'X' piece.
      */
-    public static final Piece X_PIECE = new Piece('X');
+    public static final Piece X_PIECE = Piece.X;
     /**
      * Reference of the 'O' piece.
      */
-    public static final Piece O_PIECE = new Piece('O');
+    public static final Piece O_PIECE = Piece.O;
     /**
-     * The number of {@value LENGTH}-in-a-row rows.
+     * Dimensions of the NxN square table.
      */
-    private static final int TOTAL_ROWS = (2* LENGTH) + 1;
+    private final int size;
     /**
-     * The associate cell positions of all {@value LENGTH}-in-a-row rows.
+     * Number of pieces in a row needed to win.
      */
-    private static final List<List<int[]>> rows;
-
-    static { // initialise the rows
-        int DIAG_DOWN_INDEX = TOTAL_ROWS - 1;
-        int DIAG_UP_INDEX = DIAG_DOWN_INDEX - 1;
-        rows = new ArrayList<>(TOTAL_ROWS);
-        for (int i = 0; i < TOTAL_ROWS; i++) {
-            // make all row lists
-            rows.add(new ArrayList<>(LENGTH));
-        }
-        for (int i = 0; i < LENGTH; i++) {
-            rows.get(DIAG_DOWN_INDEX).add(new int[]{i, i});
-            rows.get(DIAG_UP_INDEX).add(new int[]{(LENGTH-1)-i, i});
-            for (int j = 0; j < LENGTH; j++) {
-                rows.get(i).add(new int[]{i, j}); // horizontal rows
-                rows.get(i+LENGTH).add(new int[]{j, i}); // vertical rows
-            }
-        }
-    }
-
+    private final int winLength;
     /**
-     * Array of each cell on the game board.
+     * Total number of cells on the board.
      */
-    private final Cell[][] table;
+    private final int totalSymbols;
     /**
-     * Current {@link State} of the game.
+     * Bit masks of the pieces on every cell, the only copy of the board, used for move generation and state
+     * evaluation. Cells are read back as the shared {@link Piece} constants, so the grid holds no object per cell.
      */
-    private State state;
+    private final Bitboard board;
     /**
-     * Positions that result in either 'X' or 'O' winning.
+     * Current {@link State} of the game.
      */
-    private final Map<Character, List<int[]>> winMoves;
+    private State state;
 
     /**
-     * Check a table index is in the {@link #table} bounds.
+     * Check a row or column index is on the board.
      * @param i value to check
      */
     private void checkIndex(int i) {
-        if (i < 0 || i >= LENGTH) {
-            throw new ArrayIndexOutOfBoundsException("Index is out of bounds for the "+LENGTH+"x"+LENGTH+" grid");
+        if (i < 0 || i >= size) {
+            throw new ArrayIndexOutOfBoundsException("Index is out of bounds for the "+size+"x"+size+" grid");
         }
     }
 
@@ -93,27 +74,47 @@ public class Grid {
     }
 
     /**
-     * Retrieve the cell from the table at a given index.
+     * Retrieve the piece on a cell at a given index.
      * @param x row
      * @param y column
-     * @return symbol value
+     * @return shared piece, {@link Piece#EMPTY} if the cell is empty
      */
-    public Cell getCell(int y, int x) {
+    public Piece getCell(int y, int x) {
         checkIndex(x);
         checkIndex(y);
-        return table[y][x];
+        return Piece.of(board.getSymbol(y * size + x));
     }
 
     /**
-     * Retrieve the cell from the table at a given index.
+     * Retrieve the piece on a cell at a given index.
      * @param position {y, x} co-ordinate of cell
-     * @return symbol value
+     * @return shared piece, {@link Piece#EMPTY} if the cell is empty
      */
-    public Cell getCell(int[] position) {
+    public Piece getCell(int[] position) {
         checkPosition(position);
         return getCell(position[0], position[1]);
     }
 
+    /**
+     * Retrieve the piece on a cell at a given index.
+     * @param index cell position, left-to-right, top-to-bottom
+     * @return shared piece, {@link Piece#EMPTY} if the cell is empty
+     */
+    public Piece getCell(int index) {
+        checkCellIndex(index);
+        return Piece.of(board.getSymbol(index));
+    }
+
+    /**
+     * Get the symbol at a cell index from the bit mask board, without looking up its {@link Piece}.
+     * @param index cell position, left-to-right, top-to-bottom
+     * @return 'X', 'O' or ' ' (empty)
+     */
+    char getSymbol(int index) {
+        checkCellIndex(index);
+        return board.getSymbol(index);
+    }
+
     /**
      * Place either 'X' or 'O' at a given index.
      * @param x row
@@ -129,8 +130,19 @@ public class Grid {
         }
         checkIndex(x);
         checkIndex(y);
-        table[y][x].setTo(piece);
-        evaluateState(); // process the new grid state
+        int index = y * size + x;
+        boolean wasEmpty = board.getSymbol(index) == ' ';
+        board.set(index, piece.getSymbol());
+        if (wasEmpty && state == State.UNFINISHED) {
+            // only the lines through the new piece can have changed the state
+            if (board.completesLine(index, piece.getSymbol())) {
+                state = piece.getWinState().orElseThrow(NoSuchElementException::new);
+            } else if (board.nextEmpty(0) == -1) {
+                state = State.DRAW;
+            }
+        } else {
+            state = findState(); // a piece was replaced, or the game was already over
+        }
     }
 
     /**
@@ -143,6 +155,74 @@ public class Grid {
         setCell(position[0], position[1], piece);
     }
 
+    /**
+     * Check a cell index is on the board.
+     * @param index cell position, left-to-right, top-to-bottom
+     */
+    private void checkCellIndex(int index) {
+        if (index < 0 || index >= totalSymbols) {
+            throw new ArrayIndexOutOfBoundsException("Cell index is out of bounds for the "+size+"x"+size+" grid");
+        }
+    }
+
+    /**
+     * Place a piece on an empty cell of an unfinished game, only updating the state from the lines through that cell.
+     * This is the fastest way to make a move, taking the cell index that moves are encoded as.
+     * @param index cell position, left-to-right, top-to-bottom
+     * @param piece 'X' or 'O' piece to place
+     */
+    public void play(int index, Piece piece) {
+        if (piece.isEmpty()) {
+            throw new NoSuchElementException("Cannot place an empty symbol");
+        }
+        checkCellIndex(index);
+        if (state != State.UNFINISHED) {
+            throw new IllegalStateException("Cannot play a move, the game is over");
+        }
+        if (board.getSymbol(index) != ' ') {
+            throw new IllegalStateException("Cannot play a move on an occupied cell");
+        }
+        char symbol = piece.getSymbol();
+        board.set(index, symbol);
+        if (board.completesLine(index, symbol)) {
+            state = piece.getWinState().orElseThrow(NoSuchElementException::new);
+        } else if (board.nextEmpty(0) == -1) {
+            state = State.DRAW;
+        }
+    }
+
+    /**
+     * Remove a piece placed by {@link #play(int, Piece)}, restoring the unfinished game it was played on.
+     * @param index cell position, left-to-right, top-to-bottom
+     */
+    public void undo(int index) {
+        checkCellIndex(index);
+        board.set(index, ' ');
+        state = State.UNFINISHED;
+    }
+
+    /**
+     * Replace every piece on the board with symbols read as bytes, reusing this grid's bit masks so many boards of
+     * the same size can be read without allocating. The state is found again from the new pieces.
+     * @param symbols 'X', 'O', '_' or ' ' (empty) for each cell, left-to-right, top-to-bottom
+     * @param offset index of the first cell's symbol
+     * @throws NoSuchElementException if a symbol is not valid, leaving the board unchanged
+     */
+    void setSymbols(byte[] symbols, int offset) {
+        if (symbols.length - offset < totalSymbols) {
+            throw new IndexOutOfBoundsException("Input symbols must fill the "+size+"x"+size+" grid");
+        }
+        for (int i = 0; i < totalSymbols; i++) {
+            Piece.validSymbol((char) symbols[offset + i]);
+        }
+        board.clear();
+        for (int i = 0; i < totalSymbols; i++) {
+            byte symbol = symbols[offset + i];
+            if (symbol == 'X' || symbol == 'O') board.set(i, (char) symbol);
+        }
+        state = findState();
+    }
+
     /**
      * Get the current state of the grid.
      * @return game's status (i.e. win/lose/draw/unfinished)
@@ -152,74 +232,255 @@ public class Grid {
     }
 
     /**
-     * Get all locations resulting in a win if a piece was placed there.
-     * @return map of any winning positions for 'X' and 'O'
+     * Get all locations resulting in a win if a piece was placed there, as new lists of {y, x} co-ordinates.
+     * Kept for compatibility, {@link #getWinMoves(Piece, MoveList)} fills a reusable list instead.
+     * @return map of any winning positions for 'X' and 'O', empty lists if the game is over
      */
     public Map<Character, List<int[]>> getWinMoves() {
+        Map<Character, List<int[]>> winMoves = new HashMap<>();
+        for (Piece piece : new Piece[]{X_PIECE, O_PIECE}) {
+            List<int[]> moves = new ArrayList<>();
+            if (state == State.UNFINISHED) {
+                for (int i = nextWinMove(0, piece); i != -1; i = nextWinMove(i + 1, piece)) {
+                    moves.add(toPosition(i));
+                }
+            }
+            winMoves.put(piece.getSymbol(), moves);
+        }
         return winMoves;
     }
 
     /**
-     * Create a {@link Cell} for each input character and place it in the new Grid's {@link #table}.
-     * @param symbols list of characters denoting the current grid state, left to right, top to bottom
+     * Fill a list with every empty cell that would win the game for a piece.
+     * @param piece 'X' or 'O' piece to place
+     * @param moves list to clear and fill with cell indexes, left-to-right, top-to-bottom
+     * @return the list
      */
-    public Grid(String symbols) {
-        this.table = new Cell[LENGTH][LENGTH];
+    public MoveList getWinMoves(Piece piece, MoveList moves) {
+        moves.clear();
+        for (int i = nextWinMove(0, piece); i != -1; i = nextWinMove(i + 1, piece)) {
+            moves.add(i);
+        }
+        return moves;
+    }
+
+    /**
+     * Would placing a piece on an empty cell win the game? This is the check behind {@link #getWinMoves()} for
+     * a single cell, without re-evaluating the whole grid.
+     * @param index cell position, left-to-right, top-to-bottom
+     * @param piece 'X' or 'O' piece to place
+     */
+    public boolean isWinMove(int index, Piece piece) {
+        checkCellIndex(index);
+        return board.getSymbol(index) == ' ' && board.completesLine(index, piece.getSymbol());
+    }
+
+    /**
+     * Find the next empty cell that would win the game for a piece, without allocating, e.g.
+     * {@code for (int i = grid.nextWinMove(0, piece); i != -1; i = grid.nextWinMove(i + 1, piece))}.
+     * The win moves are kept up to date as pieces are placed, so this never scans the whole board.
+     * @param from cell index to start searching from, left-to-right, top-to-bottom
+     * @param piece 'X' or 'O' piece to place
+     * @return index of the first win move at or after {@code from}, -1 if there is none
+     */
+    public int nextWinMove(int from, Piece piece) {
+        return board.nextWinMove(from, piece.getSymbol());
+    }
+
+    /**
+     * Number of winning-length lines on the board, e.g. to score the lines still open to each player.
+     */
+    int getLineCount() {
+        return board.getLineCount();
+    }
+
+    /**
+     * Count a player's pieces on a winning-length line.
+     * @param line from 0 to {@link #getLineCount()}
+     * @param piece 'X' or 'O' piece to count
+     */
+    int getLinePieces(int line, Piece piece) {
+        return board.count(line, piece.getSymbol());
+    }
+
+    /**
+     * Get the default win length for a board size, the whole row up to {@value MAX_DEFAULT_WIN_LENGTH} in a row.
+     */
+    public static int defaultWinLength(int size) {
+        return Math.min(size, MAX_DEFAULT_WIN_LENGTH);
+    }
+
+    /**
+     * Find the size of the square board described by a list of symbols.
+     */
+    private static int sizeOf(String symbols) {
         if (symbols == null) {
             throw new NullPointerException("Input symbols cannot be null");
-        } else if (symbols.length() != TOTAL_SYMBOLS) {
-            throw new IndexOutOfBoundsException("Input symbols must have a length of "+TOTAL_SYMBOLS);
         }
-        for (int i = 0; i < TOTAL_SYMBOLS; i++) {
-            char c = symbols.charAt(i);
-            Cell cell = new Cell(c);
-            table[i/LENGTH][i%LENGTH] = cell;
+        int size = (int) Math.round(Math.sqrt(symbols.length()));
+        if (size == 0 || size * size != symbols.length()) {
+            throw new IndexOutOfBoundsException("Input symbols must fill a square grid, not "+symbols.length());
+        }
+        return size;
+    }
+
+    /**
+     * Place the piece of each input character on the new Grid's board.
+     * @param symbols list of characters denoting the current grid state, left to right, top to bottom
+     * @param winLength number of pieces in a row needed to win
+     */
+    public Grid(String symbols, int winLength) {
+        this.size = sizeOf(symbols);
+        if (winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("Win length must be from 1 to "+size+", not "+winLength);
+        }
+        this.winLength = winLength;
+        this.totalSymbols = size * size;
+        this.board = new Bitboard(size, winLength);
+        for (int i = 0; i < totalSymbols; i++) {
+            board.set(i, Piece.validSymbol(symbols.charAt(i)));
         }
-        this.winMoves = new HashMap<>(){
-            {
-                put('X', new ArrayList<>());
-                put('O', new ArrayList<>());
-            }
-        };
         evaluateState(); // find and set the current game state
     }
 
+    /**
+     * Create a grid from a list of symbols, using the {@link #defaultWinLength(int)} for its size.
+     * @param symbols list of characters denoting the current grid state, left to right, top to bottom
+     */
+    public Grid(String symbols) {
+        this(symbols, defaultWinLength(sizeOf(symbols)));
+    }
+
+    /**
+     * Create a blank NxN grid.
+     * @param size dimensions of the square table
+     * @param winLength number of pieces in a row needed to win
+     */
+    public Grid(int size, int winLength) {
+        this("_".repeat(size * size), winLength);
+    }
+
+    /**
+     * Create a copy of another grid, including its state and the win moves tracked by its board.
+     */
+    public Grid(Grid other) {
+        this.size = other.size;
+        this.winLength = other.winLength;
+        this.totalSymbols = other.totalSymbols;
+        this.board = new Bitboard(other.board);
+        this.state = other.state;
+    }
+
     /**
      * Create a blank grid.
      */
     public Grid() {
-        this("_".repeat(Grid.TOTAL_SYMBOLS));
+        this(LENGTH, LENGTH);
+    }
+
+    /**
+     * Dimensions of the NxN square table.
+     */
+    public int getSize() {
+        return size;
+    }
+
+    /**
+     * Number of pieces in a row needed to win.
+     */
+    public int getWinLength() {
+        return winLength;
+    }
+
+    /**
+     * Total number of cells on the board.
+     */
+    public int getTotalSymbols() {
+        return totalSymbols;
     }
 
     /**
      * Get the current board as a string of symbols from left-to-right, top-to-bottom.
-     * @return all {@value TOTAL_SYMBOLS} on the board
+     * @return all symbols on the board
      */
     public String getSymbols() {
-        StringBuilder sb = new StringBuilder(TOTAL_SYMBOLS);
-        for (int i = 0; i < TOTAL_SYMBOLS; i++) {
-            sb.append(table[i/LENGTH][i%LENGTH].getSymbol());
+        StringBuilder sb = new StringBuilder(totalSymbols);
+        for (int i = 0; i < totalSymbols; i++) {
+            sb.append(board.getSymbol(i));
         }
         return sb.toString();
     }
 
+    /**
+     * Get a Zobrist hash of the pieces on the board, equal boards always have equal hashes.
+     */
+    public long getHash() {
+        return board.getHash(Symmetry.IDENTITY);
+    }
+
+    /**
+     * Get a Zobrist hash of the board after it has been rotated or reflected.
+     * @param symmetry transform to apply to the board
+     */
+    public long getHash(Symmetry symmetry) {
+        return board.getHash(symmetry);
+    }
+
+    /**
+     * Find the transform that maps this board onto its canonical form, shared by all eight of its symmetries.
+     * The canonical form is the orientation with the lowest hash, the first transform is used for ties.
+     */
+    public Symmetry getCanonicalSymmetry() {
+        Symmetry canonical = Symmetry.IDENTITY;
+        long lowest = board.getHash(canonical);
+        for (Symmetry symmetry : Symmetry.ALL) {
+            long hash = board.getHash(symmetry);
+            if (hash < lowest) {
+                canonical = symmetry;
+                lowest = hash;
+            }
+        }
+        return canonical;
+    }
+
+    /**
+     * Get a hash equal for every rotation and reflection of this board.
+     */
+    public long getCanonicalHash() {
+        return board.getHash(getCanonicalSymmetry());
+    }
+
+    /**
+     * Get the canonical form of the board as a string of symbols, see {@link #getCanonicalSymmetry()}.
+     * @return all symbols of the transformed board
+     */
+    public String getCanonicalSymbols() {
+        Symmetry symmetry = getCanonicalSymmetry();
+        char[] symbols = new char[totalSymbols];
+        for (int i = 0; i < totalSymbols; i++) {
+            symbols[symmetry.apply(i, size)] = board.getSymbol(i);
+        }
+        return new String(symbols);
+    }
+
     /**
      * Create a string representation of the game board.
      */
     @Override
     public String toString() {
-        StringBuilder sb = new StringBuilder(BORDER);
+        String border = "-".repeat(2 * size + 3); // ASCII border for the top and bottom of the grid
+        StringBuilder sb = new StringBuilder(border);
         sb.append("\n");
-        for (int i = 0; i < TOTAL_SYMBOLS; i++) {
-            int x = i % LENGTH;
-            int y = i / LENGTH;
+        for (int i = 0; i < totalSymbols; i++) {
+            int x = i % size;
+            int y = i / size;
             if (x == 0) sb.append("| ");
-            sb.append(getCell(y, x).getSymbol()).append(" ");
-            if (x == LENGTH - 1) {
+            sb.append(board.getSymbol(i)).append(" ");
+            if (x == size - 1) {
                 sb.append("|\n");
             }
         }
-        sb.append(BORDER);
+        sb.append(border);
         return sb.toString();
     }
 
@@ -228,18 +489,10 @@ public class Grid {
      * @return current turn's piece, empty if grid is invalid or game is over
      */
     public Optional<Piece> nextPiece() {
-        int xCount = 0;
-        int oCount = 0;
         // count number of Xs and Os, if difference is < 1 game is invalid
-        for (int i = 0; i < TOTAL_SYMBOLS; i++) {
-            int x = i % LENGTH;
-            int y = i / LENGTH;
-            switch (getCell(y, x).getSymbol()) {
-                case 'X' -> xCount++;
-                case 'O' -> oCount++;
-            }
-        }
-        if (xCount + oCount == TOTAL_SYMBOLS) return Optional.empty(); // game is finished - no next piece
+        int xCount = board.count('X');
+        int oCount = board.count('O');
+        if (xCount + oCount == totalSymbols) return Optional.empty(); // game is finished - no next piece
         Piece next;
         switch (xCount - oCount) {
             case 0 -> next = X_PIECE;
@@ -257,7 +510,7 @@ public class Grid {
      */
     public boolean isXTurn() {
         Optional<Piece> optional = nextPiece();
-        return optional.map(piece -> piece.equals(X_PIECE)).orElse(false);
+        return optional.map(piece -> piece == X_PIECE).orElse(false);
     }
 
     /**
@@ -283,74 +536,104 @@ public class Grid {
     }
 
     /**
-     * Return a list of the positions of all empty cells.
+     * Return a new list of the {y, x} co-ordinates of all empty cells.
+     * Kept for compatibility, {@link #getEmptyCells(MoveList)} fills a reusable list instead.
      */
     public List<int[]> getEmptyCells() {
         List<int[]> result = new ArrayList<>();
-        for (int i = 0; i < TOTAL_SYMBOLS; i++) {
-            int x = i % LENGTH;
-            int y = i / LENGTH;
-            if (getCell(y, x).isEmpty()) {
-                result.add(new int[]{y, x});
-            }
+        for (int i = board.nextEmpty(0); i != -1; i = board.nextEmpty(i + 1)) {
+            result.add(toPosition(i));
         }
         return result;
     }
 
     /**
-     * Count the number of the same symbols in a given row.
-     * @param currentRow indexes of current row
-     * @param lastSymbol track the symbol with the highest frequency
-     * @param missing index of the missing symbol in a 2-in-row
-     * @return how many of the same symbols in the row
-     */
-    private int countRow(List<int[]> currentRow, Cell lastSymbol, AtomicInteger missing) {
-        int count = 0;
-        for (int i = 0; i < LENGTH; i++) {
-            // count how many of the same symbol are in a row
-            Cell current = getCell(currentRow.get(i));
-            if (current.isEmpty()) {
-                missing.set(i);
-            } else {
-                if (current.equals(lastSymbol)) {
-                    count++;
-                } else {
-                    count = 1;
-                    lastSymbol.setTo(current);
-                }
-            }
+     * Fill a list with every empty cell.
+     * @param moves list to clear and fill with cell indexes, left-to-right, top-to-bottom
+     * @return the list
+     */
+    public MoveList getEmptyCells(MoveList moves) {
+        moves.clear();
+        for (int i = board.nextEmpty(0); i != -1; i = board.nextEmpty(i + 1)) {
+            moves.add(i);
         }
-        return count;
+        return moves;
+    }
+
+    /**
+     * Convert a co-ordinate to the cell index moves are encoded as.
+     * @param y row
+     * @param x column
+     * @return cell position, left-to-right, top-to-bottom
+     * @throws ArrayIndexOutOfBoundsException if the co-ordinate is not on the board
+     */
+    public int toIndex(int y, int x) {
+        checkIndex(x);
+        checkIndex(y);
+        return y * size + x;
+    }
+
+    /**
+     * Convert a cell index to a new {y, x} co-ordinate array, for the methods that still take one.
+     * @param index cell position, left-to-right, top-to-bottom
+     * @return co-ordinate, null if the index is -1 (no move)
+     */
+    public int[] toPosition(int index) {
+        if (index == -1) return null;
+        checkCellIndex(index);
+        return new int[]{index / size, index % size};
+    }
+
+    /**
+     * Find the next empty cell without allocating, e.g.
+     * {@code for (int i = grid.nextEmptyCell(0); i != -1; i = grid.nextEmptyCell(i + 1))}.
+     * @param from cell index to start searching from, left-to-right, top-to-bottom
+     * @return index of the first empty cell at or after {@code from}, -1 if there is none
+     */
+    public int nextEmptyCell(int from) {
+        return board.nextEmpty(from);
+    }
+
+    /**
+     * Count the pieces of one player on the board.
+     * @param piece 'X' or 'O' piece to count
+     */
+    public int getPieceCount(Piece piece) {
+        return board.count(piece.getSymbol());
+    }
+
+    /**
+     * Count the cells without a piece.
+     */
+    public int getEmptyCount() {
+        return totalSymbols - board.count('X') - board.count('O');
     }
 
     /**
      * Find and set the grid's current state according to the pieces on the game board.
      */
     public void evaluateState() {
-        winMoves.values()
-                .stream()
-                .filter(list -> !list.isEmpty())
-                .forEach(List::clear); // empty all lists
-        state = State.UNPROCESSED;
-        Cell lastSymbol = new Cell('_');
+        state = findState();
+    }
+
+    /**
+     * Find the state of the game from the pieces on the board, without finding the win moves.
+     */
+    private State findState() {
+        boolean xWins = board.hasLine('X');
+        boolean oWins = board.hasLine('O');
+        if (xWins != oWins) return xWins ? State.X_WINS : State.O_WINS;
+        if (!xWins) return board.nextEmpty(0) == -1 ? State.DRAW : State.UNFINISHED;
+        // both players have a line, so the first winning piece decides
         boolean isDraw = true;
-        for (int r = 0; r < TOTAL_ROWS; r++) {
-            AtomicInteger missing = new AtomicInteger(-1);
-            int count = countRow(rows.get(r), lastSymbol, missing); // how many in a row
-            int missingIndex = missing.get(); // index of missing piece
-            if (count == LENGTH) { // game is won
-                state = lastSymbol.getWinState().orElseThrow(NoSuchElementException::new);
-                break;
-            } else if (count == LENGTH-1 && missingIndex != -1) {
-                // has one empty slot, both other pieces in the row are the same
-                int[] move = rows.get(r).get(missingIndex);
-                winMoves.get((lastSymbol.getSymbol())).add(move);
-            }
-            lastSymbol.setEmpty(); // reset last symbol for next row
-            if (isDraw) {
-                isDraw = missingIndex == -1; // there were no empty pieces in the row
+        for (int i = 0; i < totalSymbols; i++) {
+            char symbol = board.getSymbol(i);
+            if (symbol == ' ') {
+                isDraw = false;
+            } else if (board.completesLine(i, symbol)) { // game is won
+                return symbol == 'X' ? State.X_WINS : State.O_WINS;
             }
         }
-        if (state == State.UNPROCESSED) state = isDraw ? State.DRAW : State.UNFINISHED;
+        return isDraw ? State.DRAW : State.UNFINISHED;
     }
 }
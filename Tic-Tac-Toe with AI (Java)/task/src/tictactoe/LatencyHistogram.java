@@ -0,0 +1,91 @@
+package tictactoe;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts durations in buckets about 6% wide, so percentiles can be estimated without storing every sample.
+ * Any number of threads can record at once without locking.
+ */
+class LatencyHistogram {
+
+    /**
+     * Buckets per power of two, durations below this are counted exactly.
+     */
+    private static final int SUB_BUCKETS = 16;
+    /**
+     * log2 of {@link #SUB_BUCKETS}.
+     */
+    private static final int SUB_BUCKET_BITS = 4;
+    /**
+     * Enough buckets for any non-negative long.
+     */
+    private static final int BUCKETS = (Long.SIZE - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+
+    /**
+     * Number of durations counted in each bucket.
+     */
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Find the bucket counting a duration.
+     */
+    private static int bucketOf(long nanos) {
+        if (nanos < SUB_BUCKETS) return (int) Math.max(0, nanos);
+        int exponent = Long.SIZE - 1 - Long.numberOfLeadingZeros(nanos);
+        int subBucket = (int) (nanos >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+        return (exponent - SUB_BUCKET_BITS + 1) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Find the shortest duration counted in a bucket.
+     */
+    private static long lowestOf(int bucket) {
+        if (bucket < SUB_BUCKETS) return bucket;
+        int exponent = bucket / SUB_BUCKETS + SUB_BUCKET_BITS - 1;
+        long subBucket = bucket % SUB_BUCKETS;
+        return (SUB_BUCKETS + subBucket) << (exponent - SUB_BUCKET_BITS);
+    }
+
+    /**
+     * Count a duration.
+     * @param nanos duration in nanoseconds
+     */
+    void record(long nanos) {
+        counts.incrementAndGet(bucketOf(nanos));
+    }
+
+    /**
+     * Count the durations recorded so far.
+     */
+    long count() {
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            total += counts.get(i);
+        }
+        return total;
+    }
+
+    /**
+     * Estimate a percentile of the durations recorded so far.
+     * @param percentile from 0 to 100, e.g. 99 for the duration 99% of samples were within
+     * @return upper bound of the percentile's bucket in nanoseconds, 0 if nothing was recorded
+     */
+    long percentile(double percentile) {
+        long[] snapshot = new long[BUCKETS];
+        long total = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            snapshot[i] = counts.get(i);
+            total += snapshot[i];
+        }
+        if (total == 0) return 0;
+        long rank = Math.max(1, (long) Math.ceil(total * percentile / 100));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return i + 1 < BUCKETS ? lowestOf(i + 1) - 1 : Long.MAX_VALUE;
+            }
+        }
+        return Long.MAX_VALUE;
+    }
+}
@@ -1,8 +1,22 @@
 package tictactoe;
 
+import java.io.IOException;
+import java.nio.file.Paths;
+
 public class Main {
 
-    public static void main(String[] args) {
-        new Menu().loop();
+    /**
+     * Run the menu until the user exits.
+     * @param args optionally the path of a {@link GameArchive} to append every finished game to
+     */
+    public static void main(String[] args) throws IOException {
+        OpeningBook.getInstance(); // load the book before the first game, solving it on the first run
+        if (args.length > 0) {
+            try (GameArchive.Writer archive = new GameArchive.Writer(Paths.get(args[0]))) {
+                new Menu(archive).loop();
+            }
+        } else {
+            new Menu().loop();
+        }
     }
 }
@@ -1,5 +1,6 @@
 package tictactoe;
 
+import java.io.IOException;
 import java.util.Scanner;
 
 /**
@@ -13,11 +14,31 @@ public class Menu {
     private static final String ERROR = "Bad parameters!";
     private static final Scanner scan = new Scanner(System.in);
 
+    /**
+     * Records every finished game, null to not record them.
+     */
+    private final GameArchive.Writer archive;
+
+    /**
+     * Create a menu that does not record its games.
+     */
+    public Menu() {
+        this(null);
+    }
+
+    /**
+     * Create a menu that appends every finished game to an archive.
+     * @param archive writer to record games with, null to not record them
+     */
+    public Menu(GameArchive.Writer archive) {
+        this.archive = archive;
+    }
+
     /**
      * Includes all implemented controller types for players.
      */
     public enum Player {
-        USER, EASY, MEDIUM, HARD;
+        USER, EASY, MEDIUM, HARD, MCTS;
     }
 
     /**
@@ -38,14 +59,19 @@ public class Menu {
         while (true) {
             String command = getCommand();
             if ("EXIT".equals(command)) break;
-            String[] parameters = command.split("\\s");
-            boolean isError = parameters.length != 3 && parameters[0].equals("START");
+            String[] parameters = command.split("\\s+");
+            boolean isError = parameters.length < 3 || parameters.length > 5 || !parameters[0].equals("START");
             if (!isError) {
                 try {
                     Player p1 = Player.valueOf(parameters[1]);
                     Player p2 = Player.valueOf(parameters[2]);
-                    Game game = new Game();
+                    // optional board size and win length, defaulting to the classic game
+                    int size = parameters.length > 3 ? Integer.parseInt(parameters[3]) : Grid.LENGTH;
+                    int winLength = parameters.length > 4 ? Integer.parseInt(parameters[4]) : Grid.defaultWinLength(size);
+                    if (size < 1) throw new IllegalArgumentException("Board size must be positive");
+                    Game game = new Game(size, winLength);
                     game.play(p1, p2);
+                    record(game, p1, p2);
                 } catch (IllegalArgumentException e) {
                     isError = true;
                 }
@@ -53,4 +79,17 @@ public class Menu {
             if (isError) System.out.println(ERROR);
         }
     }
+
+    /**
+     * Append a finished game to the archive, if there is one.
+     */
+    private void record(Game game, Player playerX, Player playerO) {
+        if (archive == null) return;
+        try {
+            archive.append(game, playerX, playerO);
+            archive.flush(); // keep every finished game even if the program is killed
+        } catch (IOException e) {
+            System.out.println("Could not record the game: "+e.getMessage());
+        }
+    }
 }
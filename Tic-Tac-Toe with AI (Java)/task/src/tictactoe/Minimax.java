@@ -1,39 +1,321 @@
 package tictactoe;
 
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
 import java.util.NoSuchElementException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * Used to generate and process a full game tree, finding the best possible move.
+ * The tree is searched in place: each move is played on a single board, explored and then undone.
+ * Searched positions are remembered in a {@link TranspositionTable} so they are only explored once,
+ * stored in their canonical orientation so every rotation and reflection of a board shares one entry.
+ * <p>
+ * With a time or node budget the tree is searched with iterative deepening instead: each iteration searches one
+ * move deeper, scoring cut-off boards with an {@link Evaluator}, until the budget runs out.
+ * <p>
+ * The root's children can be searched in parallel on a {@link ForkJoinPool}. The first child is searched alone to
+ * set the alpha-beta window, then its younger siblings are searched concurrently within that window, each on its
+ * own copy of the board. Children are combined in the same order as a single-threaded search, so the chosen move
+ * only depends on the position, not on the number of threads.
+ * <p>
+ * Below the root, moves are tried in the order most likely to cause a cutoff: moves that win, moves that block
+ * the opponent's win, the move stored in the transposition table, killer moves that caused a cutoff at the same
+ * ply, then the rest by their history of causing cutoffs.
  */
 public class Minimax {
     /**
      * Starting value of beta, greater than maximum possible score.
      */
-    private static final int POSITIVE_INFINITY = 10;
+    private static final int POSITIVE_INFINITY = 1_000_000;
     /**
      * Starting value of alpha, less than minimum possible score.
      */
     private static final int NEGATIVE_INFINITY = POSITIVE_INFINITY * -1;
     /**
-     * The root node of the game tree.
+     * Budget value for a search without a time or node limit.
      */
-    private final Node root;
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    /**
+     * Number of nodes searched between checks of the clock.
+     */
+    private static final int CLOCK_INTERVAL = 1024;
+    /**
+     * Number of slots in each transposition table.
+     */
+    private static final int TABLE_SIZE = 1 << 16;
+    /**
+     * Results of previous searches, shared by every game in the JVM, with one table for each {@link Evaluator}
+     * as the estimates of cut-off boards differ between evaluators.
+     */
+    private static final Map<Evaluator, TranspositionTable> TABLES = new ConcurrentHashMap<>();
+    /**
+     * Worker pools for parallel searches, by parallelism.
+     */
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+    /**
+     * Ordering score of a move that wins the game.
+     */
+    private static final int ORDER_WIN = Integer.MAX_VALUE;
+    /**
+     * Ordering score of a move that stops the opponent winning on their next move.
+     */
+    private static final int ORDER_BLOCK = ORDER_WIN - 1;
+    /**
+     * Ordering score of the best move stored in the transposition table.
+     */
+    private static final int ORDER_HASH = ORDER_WIN - 2;
+    /**
+     * Ordering score of the most recent killer move, the one before it scores one less.
+     */
+    private static final int ORDER_KILLER = ORDER_WIN - 3;
+    /**
+     * Highest history score, so history never outranks a killer move.
+     */
+    private static final int MAX_HISTORY = ORDER_KILLER - 2;
+    /**
+     * Board at the root of the game tree.
+     */
+    private final Grid grid;
+    /**
+     * Scores unfinished boards where a depth-limited search is cut off.
+     */
+    private final Evaluator evaluator;
+    /**
+     * Results of previous searches with the same {@link #evaluator}.
+     */
+    private final TranspositionTable table;
+    /**
+     * Longest time to search for, in milliseconds.
+     */
+    private final long timeLimit;
+    /**
+     * Most nodes to search.
+     */
+    private final long nodeLimit;
+    /**
+     * Number of threads to search the root's children with.
+     */
+    private final int parallelism;
+    /**
+     * {@link System#nanoTime()} at which the search must stop.
+     */
+    private long deadline;
+    /**
+     * Number of nodes searched so far, by every thread.
+     */
+    private final AtomicLong nodes = new AtomicLong();
+    /**
+     * Number of boards whose remaining moves were skipped by an alpha-beta cutoff, by every thread.
+     */
+    private final AtomicLong cutoffs = new AtomicLong();
+    /**
+     * Number of transposition table lookups, by every thread.
+     */
+    private final AtomicLong probes = new AtomicLong();
+    /**
+     * Number of transposition table lookups that found the board, by every thread.
+     */
+    private final AtomicLong hits = new AtomicLong();
+    /**
+     * Has the budget run out during the current iteration?
+     */
+    private volatile boolean aborted;
+    /**
+     * Depth of the deepest fully searched iteration.
+     */
+    private volatile int completedDepth;
+    /**
+     * Cell index of the best move found at the root, -1 if there is none.
+     */
+    private int bestMove = -1;
+    /**
+     * Value of the root for player 'X' when searched to {@link #completedDepth}.
+     */
+    private int bestValue;
+    /**
+     * Are moves ordered by the win, block, killer and history heuristics?
+     */
+    private boolean moveOrdering = true;
 
     /**
-     * Initialise the root node with the starting values of alpha and beta.
+     * Copy the current game board so it can be searched without changing the original, searching the full tree.
      * @param grid the current game board
      */
     public Minimax(Grid grid) {
-        this.root = new Node(grid, NEGATIVE_INFINITY, POSITIVE_INFINITY);
+        this(grid, Evaluator.OPEN_LINES, UNLIMITED, UNLIMITED);
+    }
+
+    /**
+     * Copy the current game board so it can be searched without changing the original,
+     * searching as deep as a budget allows.
+     * @param grid the current game board
+     * @param evaluator scores boards where the search is cut off, searches only share results with searches using
+     * the same evaluator instance, so reuse one rather than creating an evaluator per search
+     * @param timeLimit milliseconds to search for, {@link #UNLIMITED} for no limit
+     * @param nodeLimit nodes to search, {@link #UNLIMITED} for no limit
+     */
+    public Minimax(Grid grid, Evaluator evaluator, long timeLimit, long nodeLimit) {
+        this(grid, evaluator, timeLimit, nodeLimit, 1);
     }
 
     /**
-     * Find the co-ordinates of the best possible move for the current player.
-     * @return {y, x} array of the move's position on the grid
+     * Copy the current game board so it can be searched without changing the original,
+     * searching as deep as a budget allows with several threads.
+     * @param grid the current game board
+     * @param evaluator scores boards where the search is cut off, searches only share results with searches using
+     * the same evaluator instance, so reuse one rather than creating an evaluator per search
+     * @param timeLimit milliseconds to search for, {@link #UNLIMITED} for no limit
+     * @param nodeLimit nodes to search, {@link #UNLIMITED} for no limit, checked every {@value CLOCK_INTERVAL} nodes
+     * @param parallelism number of threads to search with, 1 to search on the calling thread
+     */
+    public Minimax(Grid grid, Evaluator evaluator, long timeLimit, long nodeLimit, int parallelism) {
+        if (evaluator == null) {
+            throw new NullPointerException("Evaluator cannot be null");
+        }
+        if (timeLimit <= 0 || nodeLimit <= 0) {
+            throw new IllegalArgumentException("Search limits must be positive");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive, not "+parallelism);
+        }
+        this.grid = new Grid(grid);
+        this.evaluator = evaluator;
+        this.table = TABLES.computeIfAbsent(evaluator, key -> new TranspositionTable(TABLE_SIZE));
+        this.timeLimit = timeLimit;
+        this.nodeLimit = nodeLimit;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * Find the best possible move for the current player.
+     * If the search has a budget, this is the best move of the deepest completed iteration.
+     * @return cell index of the move, left-to-right, top-to-bottom, -1 if the game is over
+     */
+    public int getBestCell() {
+        GameEvents.Search event = new GameEvents.Search();
+        event.begin();
+        if (grid.getState() == Grid.State.UNFINISHED) {
+            Piece piece = grid.nextPiece().orElseThrow(NoSuchElementException::new);
+            boolean isMax = piece == Grid.X_PIECE;
+            int maxDepth = grid.getEmptyCount();
+            Searcher searcher = new Searcher(grid);
+            if (timeLimit == UNLIMITED && nodeLimit == UNLIMITED) {
+                searchRoot(searcher, isMax, maxDepth);
+                completedDepth = maxDepth;
+            } else {
+                deadline = timeLimit == UNLIMITED
+                        ? Long.MAX_VALUE
+                        : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimit);
+                for (int depth = 1; depth <= maxDepth; depth++) {
+                    int value = searchRoot(searcher, isMax, depth);
+                    if (aborted) break; // keep the result of the last completed iteration
+                    completedDepth = depth;
+                    if (Score.isDecisive(value)) break; // a forced result cannot change with depth
+                }
+            }
+            searcher.flushCounts();
+        } else {
+            bestValue = Score.getValue(grid.getState(), 0);
+        }
+        if (event.shouldCommit()) {
+            event.position = grid.getSymbols().replace(' ', '_');
+            event.move = bestMove;
+            event.value = bestValue;
+            event.depth = completedDepth;
+            event.nodes = nodes.get();
+            event.cutoffs = cutoffs.get();
+            event.probes = probes.get();
+            event.hits = hits.get();
+            event.parallelism = parallelism;
+            event.commit();
+        }
+        return bestMove;
+    }
+
+    /**
+     * Find the co-ordinates of the best possible move for the current player, see {@link #getBestCell()}.
+     * @return {y, x} array of the move's position on the grid, null if the game is over
      */
     public int[] getBestMove() {
-        root.compute();
-        return root.bestMove;
+        return grid.toPosition(getBestCell());
+    }
+
+    /**
+     * Get the value of the board for player 'X', found by {@link #getBestCell()}.
+     * This is a {@link Score} for a forced result, or an estimate if the search was cut off before the end of the game.
+     * @return value, positive if 'X' is ahead
+     */
+    public int getBestValue() {
+        return bestValue;
+    }
+
+    /**
+     * Depth of the deepest fully searched iteration.
+     */
+    public int getCompletedDepth() {
+        return completedDepth;
+    }
+
+    /**
+     * Number of nodes searched.
+     */
+    public long getNodeCount() {
+        return nodes.get();
+    }
+
+    /**
+     * Number of boards whose remaining moves were skipped by an alpha-beta cutoff.
+     */
+    public long getCutoffCount() {
+        return cutoffs.get();
+    }
+
+    /**
+     * Number of boards looked up in the transposition table.
+     */
+    public long getTableProbeCount() {
+        return probes.get();
+    }
+
+    /**
+     * Number of boards found in the transposition table, whether or not their stored result could be used.
+     */
+    public long getTableHitCount() {
+        return hits.get();
+    }
+
+    /**
+     * Turn the move ordering heuristics on or off, e.g. to measure how many nodes they save.
+     * When off, only the transposition table's move is tried early and the rest are tried in cell order.
+     */
+    void setMoveOrdering(boolean moveOrdering) {
+        this.moveOrdering = moveOrdering;
+    }
+
+    /**
+     * Search a move first, e.g. the best move of an earlier search of the same position cut off by its budget,
+     * so the first iteration's window comes from a likely best move. The search still decides the best move.
+     * @param cell cell index of the move, left-to-right, top-to-bottom, ignored if it is not an empty cell
+     */
+    public void setMoveHint(int cell) {
+        if (grid.getState() != Grid.State.UNFINISHED) return;
+        if (cell >= 0 && cell < grid.getSize() * grid.getSize() && grid.getSymbol(cell) == ' ') bestMove = cell;
+    }
+
+    /**
+     * Remove every result from the transposition tables shared by all searches, e.g. between benchmark runs.
+     */
+    static void clearTable() {
+        for (TranspositionTable table : TABLES.values()) {
+            table.clear();
+        }
     }
 
     /**
@@ -44,12 +326,24 @@ public class Minimax {
         MIN_SCORE(MAX_SCORE.value * -1),
         NEUTRAL(0);
 
+        /**
+         * Most moves a game can last, wins are scored lower the more moves they take.
+         */
+        private static final int MAX_PLY = 1 << 12;
+
         private final int value;
 
         Score(int value) {
             this.value = value;
         }
 
+        /**
+         * Get the value of this score.
+         */
+        public int value() {
+            return value;
+        }
+
         /**
          * Get the value of a given grid state.
          * @return integer representing how beneficial the board is for player 'X'
@@ -62,68 +356,438 @@ public class Minimax {
             };
         }
 
+        /**
+         * Get the value of a given grid state reached after a number of moves, preferring quicker wins.
+         */
+        static int getValue(Grid.State state, int ply) {
+            return switch (state) {
+                case X_WINS -> MAX_SCORE.value - ply;
+                case O_WINS -> MIN_SCORE.value + ply;
+                default -> NEUTRAL.value;
+            };
+        }
+
+        /**
+         * Does a value mean a player can force a win?
+         */
+        static boolean isDecisive(int value) {
+            return Math.abs(value) > MAX_SCORE.value - MAX_PLY;
+        }
+
+        /**
+         * Limit an estimated value so it is never mistaken for a forced win.
+         */
+        static int clampEstimate(int value) {
+            int limit = MAX_SCORE.value - MAX_PLY;
+            return Math.max(-limit, Math.min(limit, value));
+        }
+    }
+
+    /**
+     * Estimates how beneficial an unfinished board is for player 'X' when the search is cut off.
+     */
+    @FunctionalInterface
+    public interface Evaluator {
+
+        /**
+         * Scores every board as {@link Score#NEUTRAL}.
+         */
+        Evaluator NEUTRAL = grid -> Score.NEUTRAL.value;
+        /**
+         * Rewards rows that only one player can still complete, more so the more pieces they hold.
+         */
+        Evaluator OPEN_LINES = Minimax::countOpenLines;
+
+        /**
+         * Estimate the value of a board.
+         * @return value between {@link Score#MIN_SCORE} and {@link Score#MAX_SCORE}, positive if 'X' is ahead
+         */
+        int evaluate(Grid grid);
+    }
+
+    /**
+     * Score every winning-length row on the board, +4^n for n 'X's and no 'O's, -4^n for n 'O's and no 'X's.
+     */
+    private static int countOpenLines(Grid grid) {
+        long total = 0;
+        for (int line = grid.getLineCount() - 1; line >= 0; line--) {
+            int xCount = grid.getLinePieces(line, Grid.X_PIECE);
+            int oCount = grid.getLinePieces(line, Grid.O_PIECE);
+            if (oCount == 0 && xCount > 0) {
+                total += 1L << Math.min(2 * xCount, 40);
+            } else if (xCount == 0 && oCount > 0) {
+                total -= 1L << Math.min(2 * oCount, 40);
+            }
+        }
+        return Score.clampEstimate((int) Math.max(Integer.MIN_VALUE, Math.min(Integer.MAX_VALUE, total)));
+    }
+
+    /**
+     * Search every move from the root, updating the best move unless the budget runs out.
+     * @param searcher searcher holding the root board
+     * @param isMax is 'X' (the maximising player) to move?
+     * @param depth number of moves to search before estimating values
+     * @return value of the root, meaningless if the search was aborted
+     */
+    private int searchRoot(Searcher searcher, boolean isMax, int depth) {
+        Grid board = searcher.grid;
+        // the previous iteration's best move first, then every other possible move
+        int[] moves = new int[board.getEmptyCount()];
+        int count = 0;
+        if (bestMove != -1) moves[count++] = bestMove;
+        for (int i = board.nextEmptyCell(0); i != -1; i = board.nextEmptyCell(i + 1)) {
+            if (i != bestMove) moves[count++] = i;
+        }
+        int alpha = NEGATIVE_INFINITY;
+        int beta = POSITIVE_INFINITY;
+        int[] values = new int[count];
+        // the eldest child sets the window for its siblings
+        values[0] = searcher.searchChild(moves[0], isMax, depth, alpha, beta);
+        if (aborted) return Score.NEUTRAL.value;
+        if (isMax) {
+            alpha = values[0];
+        } else {
+            beta = values[0];
+        }
+        if (parallelism > 1 && count > 2) {
+            ForkJoinPool pool = POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+            List<ChildTask> tasks = new ArrayList<>(count - 1);
+            for (int i = 1; i < count; i++) {
+                ChildTask task = new ChildTask(moves[i], isMax, depth, alpha, beta);
+                tasks.add(task);
+                pool.execute(task);
+            }
+            for (int i = 1; i < count; i++) {
+                values[i] = tasks.get(i - 1).join();
+            }
+        } else {
+            for (int i = 1; i < count; i++) {
+                values[i] = searcher.searchChild(moves[i], isMax, depth,
+                        isMax ? Math.max(alpha, bestValue(values, i, true)) : alpha,
+                        isMax ? beta : Math.min(beta, bestValue(values, i, false)));
+                if (aborted) break;
+            }
+        }
+        if (aborted) return Score.NEUTRAL.value;
+        // combine the children in order, so ties go to the earliest move whichever thread searched it
+        int best = 0;
+        for (int i = 1; i < count; i++) {
+            if (isMax ? values[i] > values[best] : values[i] < values[best]) best = i;
+        }
+        bestMove = moves[best];
+        bestValue = values[best];
+        Symmetry symmetry = board.getCanonicalSymmetry();
+        table.store(board.getHash(symmetry), values[best], TranspositionTable.Bound.EXACT, depth,
+                symmetry.apply(bestMove, board.getSize()));
+        return values[best];
+    }
+
+    /**
+     * Find the best value among the children searched so far.
+     * @param count number of children searched
+     */
+    private static int bestValue(int[] values, int count, boolean isMax) {
+        int best = values[0];
+        for (int i = 1; i < count; i++) {
+            best = isMax ? Math.max(best, values[i]) : Math.min(best, values[i]);
+        }
+        return best;
+    }
+
+    /**
+     * Searches one of the root's younger children on its own copy of the board.
+     */
+    @SuppressWarnings("serial") // tasks are never serialized
+    private class ChildTask extends RecursiveTask<Integer> {
+        private final int move;
+        private final boolean isMax;
+        private final int depth;
+        private final int alpha;
+        private final int beta;
+
+        /**
+         * @param move cell index of the child's move
+         * @param isMax is 'X' (the maximising player) to move at the root?
+         * @param depth search depth of the root
+         * @param alpha alpha of the root after its eldest child
+         * @param beta beta of the root after its eldest child
+         */
+        private ChildTask(int move, boolean isMax, int depth, int alpha, int beta) {
+            this.move = move;
+            this.isMax = isMax;
+            this.depth = depth;
+            this.alpha = alpha;
+            this.beta = beta;
+        }
+
+        @Override
+        protected Integer compute() {
+            Searcher searcher = new Searcher(new Grid(grid));
+            int value = searcher.searchChild(move, isMax, depth, alpha, beta);
+            searcher.flushCounts();
+            return value;
+        }
     }
 
     /**
-     * Represents a node of the game tree.
+     * Explores the game tree below one board, owned by a single thread.
      */
-    private class Node {
+    private class Searcher {
         /**
-         * Current game board.
+         * Board shared by every node this searcher explores.
          */
         private final Grid grid;
         /**
-         * Value of the current best choice for the maximising player.
+         * Nodes searched since they were last added to the shared count.
+         */
+        private long nodes;
+        /**
+         * Cutoffs, table lookups and table hits since they were last added to the shared counts.
+         */
+        private long cutoffs;
+        private long probes;
+        private long hits;
+        /**
+         * Possible moves of the board at each ply, reused by every board at that ply.
          */
-        private int alpha;
+        private final int[][] moves;
         /**
-         * Value of the current best choice for the minimising player.
+         * Ordering score of each possible move at each ply, higher scores are tried first.
          */
-        private int beta;
+        private final int[][] scores;
         /**
-         * Move associated with either alpha or beta.
+         * The two most recent moves to cause a cutoff at each ply, most recent first.
          */
-        private int[] bestMove;
+        private final int[][] killers;
+        /**
+         * Score of each cell for causing cutoffs, weighted by depth, for 'X' then 'O'.
+         */
+        private final int[][] history;
 
         /**
-         * Create a new node of the game tree.
+         * @param grid the root board, owned by this searcher
          */
-        private Node(Grid grid, int alpha, int beta) {
+        private Searcher(Grid grid) {
             this.grid = grid;
-            this.alpha = alpha;
-            this.beta = beta;
+            int plies = grid.getEmptyCount() + 1;
+            this.moves = new int[plies][];
+            this.scores = new int[plies][];
+            this.killers = new int[plies][2];
+            for (int[] plyKillers : killers) {
+                Arrays.fill(plyKillers, TranspositionTable.NO_MOVE);
+            }
+            this.history = new int[2][grid.getTotalSymbols()];
         }
 
         /**
-         * Fully explore the game tree, updating each node with the best possible move from their children.
+         * Add this searcher's nodes, cutoffs and table lookups to the shared counts.
+         */
+        private void flushCounts() {
+            Minimax.this.nodes.addAndGet(nodes);
+            Minimax.this.cutoffs.addAndGet(cutoffs);
+            Minimax.this.probes.addAndGet(probes);
+            Minimax.this.hits.addAndGet(hits);
+            nodes = 0;
+            cutoffs = 0;
+            probes = 0;
+            hits = 0;
+        }
+
+        /**
+         * Has the search budget run out? The first iteration always completes so there is a move to make.
+         */
+        private boolean isOutOfBudget() {
+            if (aborted) return true;
+            if (nodes < CLOCK_INTERVAL || completedDepth == 0) return false;
+            long total = Minimax.this.nodes.addAndGet(nodes);
+            nodes = 0;
+            if (total >= nodeLimit || System.nanoTime() - deadline > 0) {
+                aborted = true;
+            }
+            return aborted;
+        }
+
+        /**
+         * Play a move from the root and search the board it leads to.
+         * @param isMax is 'X' (the maximising player) to move at the root?
+         * @param depth search depth of the root
+         */
+        private int searchChild(int move, boolean isMax, int depth, int alpha, int beta) {
+            grid.play(move, isMax ? Grid.X_PIECE : Grid.O_PIECE);
+            int value = search(!isMax, depth - 1, alpha, beta, 1);
+            grid.undo(move);
+            return value;
+        }
+
+        /**
+         * Explore the game tree below the current board.
+         * @param isMax is 'X' (the maximising player) to move?
+         * @param depth number of moves to search below this board before estimating its value
+         * @param alpha value of the current best choice for the maximising player
+         * @param beta value of the current best choice for the minimising player
+         * @param ply number of moves made since the root
          * @return the best score found at the current depth
          */
-        private int compute() {
+        private int search(boolean isMax, int depth, int alpha, int beta, int ply) {
             if (grid.getState() != Grid.State.UNFINISHED) {
-                return Score.getValue(grid.getState());
+                return Score.getValue(grid.getState(), ply);
             }
-            Piece piece = grid.nextPiece().orElseThrow(NoSuchElementException::new);
-            boolean isMax = piece.equals(Grid.X_PIECE);
-            for (int[] move : grid.getEmptyCells()) { // for every possible move
-                // create and process child node
-                Grid childGrid = new Grid(grid.getSymbols());
-                childGrid.setCell(move, piece);
-                Node child = new Node(childGrid, alpha, beta);
-                int value = child.compute();
+            if (depth == 0) {
+                return Score.clampEstimate(evaluator.evaluate(grid));
+            }
+            nodes++;
+            if (isOutOfBudget()) {
+                return Score.NEUTRAL.value;
+            }
+            int size = grid.getSize();
+            // look positions up in their canonical orientation, mapping stored moves back to this one
+            Symmetry symmetry = grid.getCanonicalSymmetry();
+            long key = grid.getHash(symmetry);
+            long entry = table.probe(key);
+            probes++;
+            int hashMove = TranspositionTable.NO_MOVE;
+            int alphaOrig = alpha;
+            int betaOrig = beta;
+            if (entry != TranspositionTable.MISS) { // position has been searched before
+                hits++;
+                hashMove = TranspositionTable.move(entry);
+                if (hashMove != TranspositionTable.NO_MOVE) hashMove = symmetry.inverse().apply(hashMove, size);
+                // only reuse results of the same depth, so values never depend on what was searched before
+                if (TranspositionTable.depth(entry) == depth) {
+                    int value = fromTable(TranspositionTable.value(entry), ply);
+                    switch (TranspositionTable.bound(entry)) {
+                        case EXACT -> {
+                            return value;
+                        }
+                        case LOWER -> alpha = Math.max(alpha, value);
+                        case UPPER -> beta = Math.min(beta, value);
+                    }
+                    if (beta <= alpha) return value;
+                }
+            }
+            Piece piece = isMax ? Grid.X_PIECE : Grid.O_PIECE;
+            Piece opponent = isMax ? Grid.O_PIECE : Grid.X_PIECE;
+            int nodeBest = TranspositionTable.NO_MOVE;
+            // every empty cell is a board at the next ply, so each ply always has the same number of moves
+            if (moves[ply] == null) {
+                moves[ply] = new int[grid.getEmptyCount()];
+                scores[ply] = new int[grid.getEmptyCount()];
+            }
+            int[] plyMoves = moves[ply];
+            int[] plyScores = scores[ply];
+            int count = 0;
+            for (int i = grid.nextEmptyCell(0); i != -1; i = grid.nextEmptyCell(i + 1)) {
+                plyMoves[count] = i;
+                plyScores[count] = moveOrdering ? score(i, piece, opponent, hashMove, ply)
+                        : i == hashMove ? ORDER_HASH : 0;
+                count++;
+            }
+            for (int n = 0; n < count; n++) {
+                // moves are picked as they are needed, as a cutoff usually comes before most are tried
+                int move = selectMove(plyMoves, plyScores, n, count);
+                // process the child node on the shared board
+                grid.play(move, piece);
+                int value = search(!isMax, depth - 1, alpha, beta, ply + 1);
+                grid.undo(move);
+                if (aborted) return Score.NEUTRAL.value; // this iteration's results are discarded
                 // update either alpha (max node) or beta (min node)
                 if (isMax && value > alpha) {
-                    bestMove = move;
+                    nodeBest = move;
                     alpha = value;
                 } else if (!isMax && value < beta) {
-                    bestMove = move;
+                    nodeBest = move;
                     beta = value;
                 }
                 /* alpha can only increase, beta can only decrease
                  * if alpha exceeds beta, this value cannot be propagated up the tree
                  */
-                if (beta <= alpha) break;
+                if (beta <= alpha) {
+                    cutoffs++;
+                    if (moveOrdering) recordCutoff(move, isMax, depth, ply);
+                    break;
+                }
+            }
+            int result = isMax ? alpha : beta; // associated best value for this player
+            TranspositionTable.Bound bound;
+            if (result <= alphaOrig) {
+                bound = TranspositionTable.Bound.UPPER;
+            } else if (result >= betaOrig) {
+                bound = TranspositionTable.Bound.LOWER;
+            } else {
+                bound = TranspositionTable.Bound.EXACT;
+            }
+            table.store(key, toTable(result, ply), bound, depth,
+                    nodeBest != TranspositionTable.NO_MOVE ? symmetry.apply(nodeBest, size) : TranspositionTable.NO_MOVE);
+            return result;
+        }
+
+        /**
+         * Score a possible move so the moves most likely to cause a cutoff are tried first.
+         * @param move cell index of an empty cell
+         * @param piece piece of the player to move
+         * @param opponent piece of the other player
+         * @param hashMove move stored in the transposition table, -1 if there is none
+         * @param ply number of moves made since the root
+         */
+        private int score(int move, Piece piece, Piece opponent, int hashMove, int ply) {
+            if (grid.isWinMove(move, piece)) return ORDER_WIN;
+            if (grid.isWinMove(move, opponent)) return ORDER_BLOCK;
+            if (move == hashMove) return ORDER_HASH;
+            if (move == killers[ply][0]) return ORDER_KILLER;
+            if (move == killers[ply][1]) return ORDER_KILLER - 1;
+            return history[piece == Grid.X_PIECE ? 0 : 1][move];
+        }
+
+        /**
+         * Move the highest scoring of the untried moves to the front of the untried moves.
+         * Moves with equal scores keep their order, so ties are tried in cell order.
+         * @param tried number of moves already tried
+         * @param count number of possible moves
+         * @return cell index of the move to try next
+         */
+        private int selectMove(int[] moves, int[] scores, int tried, int count) {
+            int best = tried;
+            for (int i = tried + 1; i < count; i++) {
+                if (scores[i] > scores[best]) best = i;
             }
-            return isMax ? alpha : beta; // associated best value for this player
+            int move = moves[best];
+            int score = scores[best];
+            System.arraycopy(moves, tried, moves, tried + 1, best - tried);
+            System.arraycopy(scores, tried, scores, tried + 1, best - tried);
+            moves[tried] = move;
+            scores[tried] = score;
+            return move;
         }
+
+        /**
+         * Remember a move that caused a cutoff, so it is tried earlier at other boards.
+         * @param isMax is 'X' (the maximising player) the player who made the move?
+         * @param depth remaining depth of the board it was made on, deeper cutoffs save more nodes
+         */
+        private void recordCutoff(int move, boolean isMax, int depth, int ply) {
+            int[] plyKillers = killers[ply];
+            if (plyKillers[0] != move) {
+                plyKillers[1] = plyKillers[0];
+                plyKillers[0] = move;
+            }
+            int[] playerHistory = history[isMax ? 0 : 1];
+            playerHistory[move] = Math.min(MAX_HISTORY, playerHistory[move] + depth * depth);
+        }
+    }
+
+    /**
+     * Convert a win's value from moves since the root to moves since the stored board, so it is valid at any ply.
+     */
+    private static int toTable(int value, int ply) {
+        if (!Score.isDecisive(value)) return value;
+        return value > 0 ? value + ply : value - ply;
+    }
+
+    /**
+     * Convert a stored win's value back to moves since the root, see {@link #toTable(int, int)}.
+     */
+    private static int fromTable(int value, int ply) {
+        if (!Score.isDecisive(value)) return value;
+        return value > 0 ? value - ply : value + ply;
     }
 }
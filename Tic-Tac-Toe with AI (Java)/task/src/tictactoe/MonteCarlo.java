@@ -0,0 +1,533 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.SplittableRandom;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.random.RandomGenerator;
+
+/**
+ * Finds a good move by Monte Carlo tree search, for boards too large for {@link Minimax} to search to the end.
+ * Each playout walks down a tree of searched positions choosing moves by UCT (upper confidence bounds applied to
+ * trees), adds one new position to the tree, then finishes the game with a {@link Rollout} and scores every
+ * position on the way. The move played most often from the root is chosen.
+ * <p>
+ * With several threads the search uses root parallelism: each thread grows its own tree from its own copy of the
+ * board, so threads never share a node, and their root visits are added together to choose the move.
+ * <p>
+ * After a search, the subtrees below each reply to the chosen move are kept, so when the opponent plays one of them
+ * the next search continues from that subtree instead of starting again.
+ */
+public class MonteCarlo {
+
+    /**
+     * No limit on the search budget.
+     */
+    public static final long UNLIMITED = Long.MAX_VALUE;
+    /**
+     * Number of playouts between checks of the clock.
+     */
+    private static final int CLOCK_INTERVAL = 64;
+    /**
+     * Weight of exploring rarely played moves against playing the best ones so far.
+     */
+    private static final double EXPLORATION = Math.sqrt(2);
+    /**
+     * Most subtrees kept for reuse by later searches, after which the longest kept are discarded.
+     * Each search keeps one per reply, so this bounds the memory held to the trees of a few searches.
+     */
+    private static final int MAX_REUSABLE_TREES = 1 << 8;
+    /**
+     * Subtrees kept from earlier searches, keyed by {@link #treeKey(Grid)} of the board at their root, from the
+     * longest kept to the most recent, guarded by their own lock.
+     * A search removes the subtree it reuses, so no two searches ever share a node.
+     */
+    private static final Map<Long, Node> REUSABLE_TREES = new LinkedHashMap<>();
+    /**
+     * Worker pools shared by every search, one per level of parallelism.
+     */
+    private static final Map<Integer, ForkJoinPool> POOLS = new ConcurrentHashMap<>();
+
+    /**
+     * How a playout finishes the game once it leaves the tree.
+     */
+    public enum Rollout {
+        /**
+         * Play random moves, like the easy player.
+         */
+        RANDOM,
+        /**
+         * Win if possible, otherwise block the opponent's win, otherwise play a random move, like the medium player.
+         */
+        GUIDED
+    }
+
+    /**
+     * Copy of the board to search from.
+     */
+    private final Grid grid;
+    private final Rollout rollout;
+    /**
+     * Milliseconds to search for, {@link #UNLIMITED} for no limit.
+     */
+    private final long timeLimit;
+    /**
+     * Playouts to play, {@link #UNLIMITED} for no limit.
+     */
+    private final long playoutLimit;
+    /**
+     * Number of threads, each growing its own tree.
+     */
+    private final int parallelism;
+    /**
+     * Are subtrees kept between searches?
+     */
+    private boolean treeReuse = true;
+    /**
+     * Number of playouts played by every thread.
+     */
+    private final AtomicLong playouts = new AtomicLong();
+    /**
+     * Playouts found in the reused subtree when the search started.
+     */
+    private long reusedPlayouts;
+    /**
+     * {@link System#nanoTime()} at which the search stops.
+     */
+    private long deadline;
+    /**
+     * Mean score of the chosen move for the player to move, from 0 (loss) to 1 (win).
+     */
+    private double bestScore;
+
+    /**
+     * Copy the current game board so it can be searched without changing the original.
+     * At least one of the limits must be set, or the search would never end.
+     * @param grid the current game board
+     * @param rollout how playouts finish the game
+     * @param timeLimit milliseconds to search for, {@link #UNLIMITED} for no limit
+     * @param playoutLimit playouts to play, {@link #UNLIMITED} for no limit, checked every {@value CLOCK_INTERVAL}
+     * @param parallelism number of threads to search with, 1 to search on the calling thread
+     */
+    public MonteCarlo(Grid grid, Rollout rollout, long timeLimit, long playoutLimit, int parallelism) {
+        if (rollout == null) {
+            throw new NullPointerException("Rollout cannot be null");
+        }
+        if (timeLimit <= 0 || playoutLimit <= 0) {
+            throw new IllegalArgumentException("Search limits must be positive");
+        }
+        if (timeLimit == UNLIMITED && playoutLimit == UNLIMITED) {
+            throw new IllegalArgumentException("Monte Carlo search needs a time or playout limit");
+        }
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive, not "+parallelism);
+        }
+        this.grid = new Grid(grid);
+        this.rollout = rollout;
+        this.timeLimit = timeLimit;
+        this.playoutLimit = playoutLimit;
+        this.parallelism = parallelism;
+    }
+
+    /**
+     * A position in a search tree, reached by playing a move from its parent.
+     */
+    private static final class Node {
+        /**
+         * Cell index of the move from the parent, -1 at the root.
+         */
+        private final int move;
+        /**
+         * Number of playouts through this node.
+         */
+        private int visits;
+        /**
+         * Total score of those playouts for the player who made {@link #move}: 1 for a win, 0.5 for a draw.
+         */
+        private double score;
+        /**
+         * Every possible move in the order they are tried, null until the node is first expanded.
+         */
+        private int[] moves;
+        /**
+         * Children created so far, one for each of the first {@link #expanded} moves.
+         */
+        private Node[] children;
+        private int expanded;
+
+        private Node(int move) {
+            this.move = move;
+        }
+
+        /**
+         * List the empty cells of the board at this node, shuffled so children are created in a random order.
+         */
+        private void listMoves(Grid grid, RandomGenerator random) {
+            int count = grid.getEmptyCount();
+            moves = new int[count];
+            int i = 0;
+            for (int move = grid.nextEmptyCell(0); move != -1; move = grid.nextEmptyCell(move + 1)) {
+                int j = random.nextInt(i + 1);
+                moves[i] = moves[j];
+                moves[j] = move;
+                i++;
+            }
+            children = new Node[count];
+        }
+
+        /**
+         * Find the child with the highest upper confidence bound, balancing its mean score with how rarely it has
+         * been played. Only called once every child has been created.
+         */
+        private Node select() {
+            double logVisits = Math.log(visits);
+            Node best = children[0];
+            double bestBound = Double.NEGATIVE_INFINITY;
+            for (Node child : children) {
+                double bound = child.score / child.visits + EXPLORATION * Math.sqrt(logVisits / child.visits);
+                if (bound > bestBound) {
+                    best = child;
+                    bestBound = bound;
+                }
+            }
+            return best;
+        }
+
+        /**
+         * Find the child created for a move.
+         * @return child, null if it has not been created
+         */
+        private Node child(int move) {
+            for (int i = 0; i < expanded; i++) {
+                if (children[i].move == move) return children[i];
+            }
+            return null;
+        }
+    }
+
+    /**
+     * Find the best move for the current player within the budget.
+     * A move that wins at once is always played without searching.
+     * @param random source of the search's random choices, only used by the calling thread
+     * @return cell index of the move, left-to-right, top-to-bottom, -1 if the game is over
+     */
+    public int getBestCell(RandomGenerator random) {
+        if (grid.getState() != Grid.State.UNFINISHED) return -1;
+        Piece piece = grid.nextPiece().orElseThrow(NoSuchElementException::new);
+        int win = grid.nextWinMove(0, piece);
+        if (win != -1) {
+            bestScore = 1;
+            return win;
+        }
+        deadline = timeLimit == UNLIMITED
+                ? Long.MAX_VALUE
+                : System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeLimit);
+        playouts.set(0);
+        reusedPlayouts = 0;
+        List<Searcher> searchers = new ArrayList<>(parallelism);
+        for (int i = 0; i < parallelism; i++) {
+            Node root = i == 0 && treeReuse ? takeTree(treeKey(grid)) : null;
+            if (root == null) {
+                root = new Node(-1);
+            } else {
+                reusedPlayouts = root.visits;
+            }
+            // each thread has its own generator, seeded from the caller's so a single thread is repeatable
+            searchers.add(new Searcher(root, new SplittableRandom(random.nextLong())));
+        }
+        if (parallelism == 1) {
+            searchers.get(0).compute();
+        } else {
+            ForkJoinPool pool = POOLS.computeIfAbsent(parallelism, ForkJoinPool::new);
+            for (Searcher searcher : searchers) {
+                pool.execute(searcher);
+            }
+            for (Searcher searcher : searchers) {
+                searcher.join();
+            }
+        }
+        int move = chooseMove(searchers);
+        if (treeReuse) keepReplies(searchers.get(0).root, move, piece);
+        return move;
+    }
+
+    /**
+     * Find the co-ordinates of the best move found for the current player within the budget,
+     * see {@link #getBestCell(RandomGenerator)}.
+     * @param random source of the search's random choices, only used by the calling thread
+     * @return {y, x} array of the move's position on the grid, null if the game is over
+     */
+    public int[] getBestMove(RandomGenerator random) {
+        return grid.toPosition(getBestCell(random));
+    }
+
+    /**
+     * Choose the move played most often from the root, adding up every thread's tree.
+     */
+    private int chooseMove(List<Searcher> searchers) {
+        int cells = grid.getTotalSymbols();
+        long[] visits = new long[cells];
+        double[] scores = new double[cells];
+        for (Searcher searcher : searchers) {
+            Node root = searcher.root;
+            for (int i = 0; i < root.expanded; i++) {
+                Node child = root.children[i];
+                visits[child.move] += child.visits;
+                scores[child.move] += child.score;
+            }
+        }
+        int best = grid.nextEmptyCell(0);
+        for (int move = best; move != -1; move = grid.nextEmptyCell(move + 1)) {
+            if (visits[move] > visits[best]) best = move;
+        }
+        bestScore = visits[best] == 0 ? 0.5 : scores[best] / visits[best];
+        return best;
+    }
+
+    /**
+     * Keep the subtree below each reply to the chosen move, keyed by the board it starts from.
+     */
+    private void keepReplies(Node root, int move, Piece piece) {
+        Node chosen = root.child(move);
+        if (chosen == null) return;
+        grid.play(move, piece);
+        for (int i = 0; i < chosen.expanded && grid.getState() == Grid.State.UNFINISHED; i++) {
+            Node reply = chosen.children[i];
+            grid.play(reply.move, piece.getOpposite());
+            if (grid.getState() == Grid.State.UNFINISHED) {
+                keepTree(treeKey(grid), reply);
+            }
+            grid.undo(reply.move);
+        }
+        grid.undo(move);
+    }
+
+    /**
+     * Key a board's subtree by its pieces and rules, as boards with the same pieces but a different win length
+     * have different trees.
+     */
+    private static long treeKey(Grid grid) {
+        return grid.getHash() * 31 + grid.getWinLength();
+    }
+
+    /**
+     * Number of playouts played by the last search, not counting those of a reused subtree.
+     */
+    public long getPlayoutCount() {
+        return playouts.get();
+    }
+
+    /**
+     * Number of playouts already in the subtree the last search continued from, 0 if it started a new tree.
+     */
+    public long getReusedPlayoutCount() {
+        return reusedPlayouts;
+    }
+
+    /**
+     * Mean score of the chosen move for the player who makes it, from 0 (always lost) to 1 (always won).
+     */
+    public double getBestScore() {
+        return bestScore;
+    }
+
+    /**
+     * Turn keeping subtrees between searches on or off, e.g. to measure how much reusing them helps.
+     */
+    void setTreeReuse(boolean treeReuse) {
+        this.treeReuse = treeReuse;
+    }
+
+    /**
+     * Keep a subtree for reuse, discarding the longest kept subtree if too many are kept, so other games' trees
+     * are only discarded once they are unlikely to be reused.
+     * @param key {@link #treeKey(Grid)} of the board at the subtree's root
+     */
+    private static void keepTree(long key, Node tree) {
+        synchronized (REUSABLE_TREES) {
+            REUSABLE_TREES.remove(key); // so a replaced subtree counts as the most recent
+            REUSABLE_TREES.put(key, tree);
+            if (REUSABLE_TREES.size() > MAX_REUSABLE_TREES) {
+                Iterator<Node> eldest = REUSABLE_TREES.values().iterator();
+                eldest.next();
+                eldest.remove();
+            }
+        }
+    }
+
+    /**
+     * Remove a kept subtree to reuse it.
+     * @param key {@link #treeKey(Grid)} of the board at the subtree's root
+     * @return subtree, null if none is kept for the board
+     */
+    private static Node takeTree(long key) {
+        synchronized (REUSABLE_TREES) {
+            return REUSABLE_TREES.remove(key);
+        }
+    }
+
+    /**
+     * Discard every subtree kept for reuse, e.g. between benchmark runs.
+     */
+    static void clearTrees() {
+        synchronized (REUSABLE_TREES) {
+            REUSABLE_TREES.clear();
+        }
+    }
+
+    /**
+     * Grows one tree on its own copy of the board, owned by a single thread.
+     */
+    @SuppressWarnings("serial") // tasks are never serialized
+    private class Searcher extends RecursiveAction {
+        private final Node root;
+        private final Grid board;
+        private final RandomGenerator random;
+        /**
+         * Nodes from the root to the node being played out.
+         */
+        private final Node[] path;
+        /**
+         * Empty cells left in the rollout, the first {@code count} of which are free.
+         */
+        private final int[] free;
+        /**
+         * Moves played by the rollout, in order.
+         */
+        private final int[] played;
+        /**
+         * Piece that makes the move into a node, indexed by the node's depth modulo 2.
+         * The root's piece makes the moves at odd depths.
+         */
+        private final Piece[] movers = new Piece[2];
+        /**
+         * Winning state of each of {@link #movers}.
+         */
+        private final Grid.State[] wins = new Grid.State[2];
+
+        private Searcher(Node root, RandomGenerator random) {
+            this.root = root;
+            this.board = new Grid(grid);
+            this.random = random;
+            int cells = board.getTotalSymbols();
+            this.path = new Node[board.getEmptyCount() + 1];
+            this.free = new int[cells];
+            this.played = new int[cells];
+            Piece rootPiece = board.nextPiece().orElseThrow(NoSuchElementException::new);
+            movers[1] = rootPiece;
+            movers[0] = rootPiece.getOpposite();
+            for (int i = 0; i < movers.length; i++) {
+                wins[i] = movers[i].getWinState().orElseThrow(NoSuchElementException::new);
+            }
+        }
+
+        /**
+         * Play out games until the budget runs out, always at least once.
+         */
+        @Override
+        protected void compute() {
+            long local = 0;
+            do {
+                playout();
+                local++;
+            } while (local % CLOCK_INTERVAL != 0 || !isOutOfBudget());
+        }
+
+        /**
+         * Add this searcher's last {@value CLOCK_INTERVAL} playouts to the shared count and check the budget.
+         */
+        private boolean isOutOfBudget() {
+            long total = playouts.addAndGet(CLOCK_INTERVAL);
+            return total >= playoutLimit || System.nanoTime() - deadline > 0;
+        }
+
+        /**
+         * Walk down the tree by UCT, add a new node, finish the game and score every node on the way.
+         */
+        private void playout() {
+            Node node = root;
+            path[0] = root;
+            int depth = 0;
+            while (board.getState() == Grid.State.UNFINISHED) {
+                if (node.moves == null) node.listMoves(board, random);
+                Node child;
+                if (node.expanded < node.moves.length) {
+                    child = new Node(node.moves[node.expanded]);
+                    node.children[node.expanded++] = child;
+                } else {
+                    child = node.select();
+                }
+                depth++;
+                board.play(child.move, movers[depth & 1]);
+                path[depth] = child;
+                node = child;
+                if (child.visits == 0) break; // a new node, finish the game from here
+            }
+            Grid.State result = rollout(depth);
+            for (int d = depth; d >= 0; d--) {
+                Node visited = path[d];
+                visited.visits++;
+                if (d > 0) {
+                    visited.score += score(result, d & 1);
+                    board.undo(visited.move);
+                }
+            }
+        }
+
+        /**
+         * Score a result for the player who makes the moves at a depth.
+         * @param parity depth modulo 2
+         */
+        private double score(Grid.State result, int parity) {
+            if (result == Grid.State.DRAW) return 0.5;
+            return result == wins[parity] ? 1 : 0;
+        }
+
+        /**
+         * Finish the game from the current board with the rollout policy, then undo the rollout's moves.
+         * @param depth depth of the node the rollout starts from
+         * @return final state of the game
+         */
+        private Grid.State rollout(int depth) {
+            int count = 0;
+            for (int move = board.nextEmptyCell(0); move != -1; move = board.nextEmptyCell(move + 1)) {
+                free[count++] = move;
+            }
+            int moves = 0;
+            int turn = depth + 1;
+            while (board.getState() == Grid.State.UNFINISHED) {
+                Piece piece = movers[turn & 1];
+                int move = -1;
+                if (rollout == Rollout.GUIDED) {
+                    move = board.nextWinMove(0, piece);
+                    if (move == -1) move = board.nextWinMove(0, movers[(turn + 1) & 1]);
+                }
+                int index;
+                if (move == -1) {
+                    index = random.nextInt(count);
+                    move = free[index];
+                } else {
+                    index = 0;
+                    while (free[index] != move) index++;
+                }
+                free[index] = free[--count];
+                board.play(move, piece);
+                played[moves++] = move;
+                turn++;
+            }
+            Grid.State result = board.getState();
+            while (moves > 0) {
+                board.undo(played[--moves]);
+            }
+            return result;
+        }
+    }
+}
@@ -0,0 +1,105 @@
+package tictactoe;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * A reusable list of moves, each a cell index left-to-right, top-to-bottom, stored in a primitive array.
+ * Filling the same list again after {@link #clear()} allocates nothing once it has grown to fit,
+ * unlike a list of {@code int[]{y, x}} co-ordinates.
+ * A list is not thread-safe, so each thread should fill its own.
+ */
+public final class MoveList {
+
+    /**
+     * Cell index of each move, only the first {@link #size} are in the list.
+     */
+    private int[] moves;
+    private int size;
+
+    /**
+     * Create an empty list with room for a board's moves.
+     * @param capacity number of moves to hold before growing, e.g. the number of cells on the board
+     */
+    public MoveList(int capacity) {
+        if (capacity < 0) {
+            throw new IllegalArgumentException("Capacity cannot be negative");
+        }
+        this.moves = new int[capacity];
+    }
+
+    /**
+     * Create an empty list with room for every move of a {@value Grid#LENGTH}x{@value Grid#LENGTH} board.
+     */
+    public MoveList() {
+        this(Grid.TOTAL_SYMBOLS);
+    }
+
+    /**
+     * Add a move to the end of the list.
+     * @param index cell index of the move
+     */
+    public void add(int index) {
+        if (size == moves.length) {
+            moves = Arrays.copyOf(moves, Math.max(1, size * 2));
+        }
+        moves[size++] = index;
+    }
+
+    /**
+     * Get a move from the list.
+     * @param i position in the list, from 0
+     * @return cell index of the move
+     */
+    public int get(int i) {
+        if (i < 0 || i >= size) {
+            throw new IndexOutOfBoundsException("Index "+i+" is out of bounds for "+size+" moves");
+        }
+        return moves[i];
+    }
+
+    /**
+     * Choose a move from the list at random.
+     * @return cell index of the move
+     * @throws IllegalStateException if the list is empty
+     */
+    public int getRandom(RandomGenerator random) {
+        if (size == 0) {
+            throw new IllegalStateException("Cannot choose a move from an empty list");
+        }
+        return moves[random.nextInt(size)];
+    }
+
+    /**
+     * Number of moves in the list.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Is the list empty?
+     */
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * Remove every move, keeping the space to fill the list again.
+     */
+    public void clear() {
+        size = 0;
+    }
+
+    /**
+     * Copy the moves into a new array.
+     */
+    public int[] toArray() {
+        return Arrays.copyOf(moves, size);
+    }
+
+    @Override
+    public String toString() {
+        return Arrays.toString(toArray());
+    }
+}
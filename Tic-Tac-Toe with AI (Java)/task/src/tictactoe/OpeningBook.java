@@ -0,0 +1,306 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * A precomputed table of perfect play for every position reachable from an empty grid, using the default rules.
+ * The table is solved once, written to a binary file and memory-mapped on later runs.
+ * <p>
+ * File layout (big-endian): a header of {@link #MAGIC}, {@link #VERSION}, the number of cells and the number of
+ * entries, followed by one 16-bit entry per position. A position's entry is found by reading its cells as a
+ * base-3 number (empty = 0, 'X' = 1, 'O' = 2). Each entry holds a mask of the best moves in bits 0-8, the
+ * {@link Grid.State} reached with perfect play in bits 9-10, the number of moves until then in bits 11-14, and bit
+ * 15 is set if the position is in the book. As with {@link Minimax}, the best moves win as fast as possible, or lose
+ * as slowly as possible.
+ */
+public class OpeningBook {
+
+    /**
+     * First bytes of a book file, "TTTB".
+     */
+    private static final int MAGIC = 0x54545442;
+    /**
+     * Version of the file layout.
+     */
+    private static final int VERSION = 2;
+    /**
+     * Size of the file header in bytes.
+     */
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    /**
+     * Number of positions indexed by the book, one per base-3 board.
+     */
+    private static final int ENTRIES = (int) Math.pow(3, Grid.TOTAL_SYMBOLS);
+    /**
+     * Set on entries for positions in the book.
+     */
+    private static final int PRESENT = 1 << 15;
+    /**
+     * Shift of the outcome in an entry.
+     */
+    private static final int OUTCOME_SHIFT = 9;
+    /**
+     * Shift of the number of moves until the end of the game in an entry.
+     */
+    private static final int DISTANCE_SHIFT = 11;
+    /**
+     * System property to override where the book is stored.
+     */
+    private static final String PATH_PROPERTY = "tictactoe.book";
+    /**
+     * Every game state, indexed by ordinal.
+     */
+    private static final Grid.State[] STATES = Grid.State.values();
+    /**
+     * Value of each cell index in the base-3 position index.
+     */
+    private static final int[] POWERS_OF_3 = new int[Grid.TOTAL_SYMBOLS];
+
+    static {
+        int power = 1;
+        for (int i = 0; i < Grid.TOTAL_SYMBOLS; i++) {
+            POWERS_OF_3[i] = power;
+            power *= 3;
+        }
+    }
+
+    /**
+     * Header and entries of the book, memory-mapped when loaded from a file.
+     */
+    private final ByteBuffer buffer;
+
+    /**
+     * Wrap a buffer holding a book.
+     */
+    private OpeningBook(ByteBuffer buffer) {
+        this.buffer = buffer;
+    }
+
+    /**
+     * Lazily loads the shared book on first use.
+     */
+    private static class Holder {
+        private static final OpeningBook INSTANCE = loadOrGenerate(defaultPath());
+    }
+
+    /**
+     * Get the book shared by every game, loading it (or generating it on the first run) if needed.
+     */
+    public static OpeningBook getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Where the book is stored, set by the {@value PATH_PROPERTY} property or the temporary directory.
+     */
+    private static Path defaultPath() {
+        String property = System.getProperty(PATH_PROPERTY);
+        if (property != null) return Paths.get(property);
+        return Paths.get(System.getProperty("java.io.tmpdir"), "tictactoe-"+Grid.LENGTH+"x"+Grid.LENGTH+".book");
+    }
+
+    /**
+     * Memory-map a book file, solving and writing a new one if it is missing or invalid.
+     * If the file cannot be written the book is kept in memory instead.
+     */
+    static OpeningBook loadOrGenerate(Path path) {
+        try {
+            return load(path);
+        } catch (IOException | IllegalStateException e) {
+            ByteBuffer generated = generate();
+            try {
+                write(generated, path);
+                return load(path);
+            } catch (IOException | IllegalStateException ignored) {
+                return new OpeningBook(generated);
+            }
+        }
+    }
+
+    /**
+     * Memory-map an existing book file.
+     * @throws IllegalStateException if the file is not a valid book
+     */
+    static OpeningBook load(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+            if (buffer.capacity() != HEADER_BYTES + ENTRIES * Short.BYTES
+                    || buffer.getInt(0) != MAGIC
+                    || buffer.getInt(4) != VERSION
+                    || buffer.getInt(8) != Grid.TOTAL_SYMBOLS
+                    || buffer.getInt(12) != ENTRIES) {
+                throw new IllegalStateException(path+" is not a valid opening book");
+            }
+            return new OpeningBook(buffer);
+        }
+    }
+
+    /**
+     * Write a book to a file, replacing it atomically so readers never see a partial book.
+     */
+    private static void write(ByteBuffer book, Path path) throws IOException {
+        Path parent = path.toAbsolutePath().getParent();
+        Path temp = Files.createTempFile(parent, "tictactoe", ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+            ByteBuffer source = book.duplicate();
+            source.clear();
+            while (source.hasRemaining()) {
+                channel.write(source);
+            }
+        }
+        Files.move(temp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * Solve every position reachable from an empty grid.
+     * @return buffer holding the header and entries of the book
+     */
+    static ByteBuffer generate() {
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_BYTES + ENTRIES * Short.BYTES);
+        buffer.putInt(MAGIC).putInt(VERSION).putInt(Grid.TOTAL_SYMBOLS).putInt(ENTRIES);
+        solve(new Grid(), true, 0, buffer);
+        return buffer;
+    }
+
+    /**
+     * Find the perfect-play outcome and every best move of a position and its descendants.
+     * @param isMax is 'X' to move?
+     * @param index base-3 index of the position
+     * @return value of the position for 'X', weighted by the number of pieces on the board when the game ends as
+     * {@link Minimax.Score#getValue(Grid.State, int)} weights it, so quicker wins are worth more
+     */
+    private static int solve(Grid grid, boolean isMax, int index, ByteBuffer buffer) {
+        int pieces = Grid.TOTAL_SYMBOLS - grid.getEmptyCount();
+        int offset = HEADER_BYTES + index * Short.BYTES;
+        int entry = buffer.getShort(offset);
+        if ((entry & PRESENT) != 0) {
+            return Minimax.Score.getValue(outcome(entry), pieces + distance(entry));
+        }
+        Grid.State state = grid.getState();
+        int bestMoves = 0;
+        int distance = 0;
+        if (state == Grid.State.UNFINISHED) {
+            Piece piece = isMax ? Grid.X_PIECE : Grid.O_PIECE;
+            int digit = isMax ? 1 : 2;
+            int best = 0;
+            for (int move = grid.nextEmptyCell(0); move != -1; move = grid.nextEmptyCell(move + 1)) {
+                int child = index + digit * POWERS_OF_3[move];
+                grid.play(move, piece);
+                int value = solve(grid, !isMax, child, buffer);
+                grid.undo(move);
+                if (bestMoves == 0 || (isMax ? value > best : value < best)) {
+                    best = value;
+                    bestMoves = 1 << move;
+                    distance = distance(buffer.getShort(HEADER_BYTES + child * Short.BYTES)) + 1;
+                } else if (value == best) {
+                    bestMoves |= 1 << move;
+                }
+            }
+            state = best > 0 ? Grid.State.X_WINS : best < 0 ? Grid.State.O_WINS : Grid.State.DRAW;
+        }
+        buffer.putShort(offset, (short) (PRESENT | (distance << DISTANCE_SHIFT) | (state.ordinal() << OUTCOME_SHIFT)
+                | bestMoves));
+        return Minimax.Score.getValue(state, pieces + distance);
+    }
+
+    /**
+     * Get the outcome stored in an entry.
+     */
+    private static Grid.State outcome(int entry) {
+        return STATES[(entry >>> OUTCOME_SHIFT) & 0b11];
+    }
+
+    /**
+     * Get the number of moves until the end of the game stored in an entry.
+     */
+    private static int distance(int entry) {
+        return (entry >>> DISTANCE_SHIFT) & 0b1111;
+    }
+
+    /**
+     * Find the entry of a position.
+     * @return entry, 0 if the position is not in the book
+     */
+    private int entry(Grid grid) {
+        if (grid.getSize() != Grid.LENGTH || grid.getWinLength() != Grid.LENGTH) {
+            return 0; // only the default rules are solved
+        }
+        int index = 0;
+        for (int i = 0; i < Grid.TOTAL_SYMBOLS; i++) {
+            switch (grid.getSymbol(i)) {
+                case 'X' -> index += POWERS_OF_3[i];
+                case 'O' -> index += 2 * POWERS_OF_3[i];
+            }
+        }
+        return buffer.getShort(HEADER_BYTES + index * Short.BYTES) & 0xFFFF;
+    }
+
+    /**
+     * Is this position in the book?
+     */
+    public boolean contains(Grid grid) {
+        return entry(grid) != 0;
+    }
+
+    /**
+     * Get every optimal move of a position, those winning soonest or losing latest.
+     * @return mask of cell indexes, 0 if the game is over or the position is not in the book
+     */
+    public int getBestMoves(Grid grid) {
+        return entry(grid) & ((1 << Grid.TOTAL_SYMBOLS) - 1);
+    }
+
+    /**
+     * Get the lowest-indexed optimal move of a position.
+     * @return cell index of the move, -1 if the game is over or the position is not in the book
+     */
+    public int getBestCell(Grid grid) {
+        int moves = getBestMoves(grid);
+        return moves != 0 ? Integer.numberOfTrailingZeros(moves) : -1;
+    }
+
+    /**
+     * Get the lowest-indexed optimal move of a position, see {@link #getBestCell(Grid)}.
+     * @return {y, x} co-ordinate of the move, null if the game is over or the position is not in the book
+     */
+    public int[] getBestMove(Grid grid) {
+        int move = getBestCell(grid);
+        return move != -1 ? new int[]{move / Grid.LENGTH, move % Grid.LENGTH} : null;
+    }
+
+    /**
+     * Get the result of the game if both players play perfectly from a position.
+     * @return {@link Grid.State#UNPROCESSED} if the position is not in the book
+     */
+    public Grid.State getOutcome(Grid grid) {
+        int entry = entry(grid);
+        return entry != 0 ? outcome(entry) : Grid.State.UNPROCESSED;
+    }
+
+    /**
+     * Get the number of moves until the game ends if both players play perfectly from a position,
+     * the winner winning as fast as possible.
+     * @return number of moves, -1 if the position is not in the book
+     */
+    public int getDistance(Grid grid) {
+        int entry = entry(grid);
+        return entry != 0 ? distance(entry) : -1;
+    }
+
+    /**
+     * Solve every position and write the book to a file, e.g. as a build step.
+     * @param args path of the book file, defaults to the path used by {@link #getInstance()}
+     */
+    public static void main(String[] args) throws IOException {
+        Path path = args.length > 0 ? Paths.get(args[0]) : defaultPath();
+        write(generate(), path);
+        System.out.println("Wrote opening book to "+path);
+    }
+}
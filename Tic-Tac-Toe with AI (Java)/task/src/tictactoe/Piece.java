@@ -4,15 +4,32 @@ import java.util.NoSuchElementException;
 import java.util.Optional;
 
 /**
- * Represents a piece that can exist on the table.
+ * Represents a piece that can exist on the table, or the lack of one on an empty cell.
+ * There is one shared, immutable instance of each, so pieces can be compared by reference and getting one never
+ * allocates.
  */
-public class Piece {
+public enum Piece {
 
+    X('X', Grid.State.X_WINS),
+    O('O', Grid.State.O_WINS),
+    EMPTY(' ', null);
 
     /**
      * Character representing the piece.
      */
-    protected char symbol;
+    private final char symbol;
+    /**
+     * State of a game won by this piece, empty for {@link #EMPTY}, kept so looking it up does not allocate.
+     */
+    private final Optional<Grid.State> winState;
+
+    /**
+     * Create a piece from its symbol and the state of a game it has won.
+     */
+    Piece(char symbol, Grid.State winState) {
+        this.symbol = symbol;
+        this.winState = Optional.ofNullable(winState);
+    }
 
     /**
      * Get the ASCII representation of the piece.
@@ -24,68 +41,55 @@ public class Piece {
     /**
      * Check input is a valid character.
      * @param symbol must be `X`, `O` or `_` (representing an empty tile)
+     * @return 'X', 'O' or ' ' (empty)
      */
-    protected static char validSymbol(char symbol) {
+    static char validSymbol(char symbol) {
         return switch (symbol) {
             case 'X', 'O' -> symbol;
             case '_', ' ' -> ' ';
             default -> throw new NoSuchElementException("\""+symbol+"\" is not a valid Tile");
         };
-
     }
 
     /**
-     * Does this contain a game piece?
+     * Get the shared piece for 'X', 'O' or '_' (empty).
+     * @throws NoSuchElementException if the symbol is not a valid tile
      */
-    public boolean isEmpty() {
-        return symbol == ' ';
+    public static Piece of(char symbol) {
+        return switch (validSymbol(symbol)) {
+            case 'X' -> X;
+            case 'O' -> O;
+            default -> EMPTY;
+        };
     }
 
     /**
-     * Create a Piece object from 'X', 'O' or '_' (empty).
+     * Does this contain a game piece?
      */
-    Piece(char symbol) {
-        this.symbol = validSymbol(symbol);
+    public boolean isEmpty() {
+        return this == EMPTY;
     }
 
     /**
      * If the piece is not empty, get the symbol's associated win state.
      */
-    protected Optional<Grid.State> getWinState() {
-        return switch (symbol) {
-            case 'X' -> Optional.of(Grid.State.X_WINS);
-            case 'O' -> Optional.of(Grid.State.O_WINS);
-            default -> Optional.empty();
-        };
+    Optional<Grid.State> getWinState() {
+        return winState;
     }
 
     /**
      * If the piece is not empty, get the opposing player.
      */
     public Piece getOpposite() {
-        return switch (symbol) {
-            case 'X' -> new Piece('O');
-            case 'O' -> new Piece('X');
+        return switch (this) {
+            case X -> O;
+            case O -> X;
             default -> throw new NoSuchElementException("Empty has no opposite player");
         };
     }
 
-    /**
-     * Pieces are equal if they hold the same {@link #symbol}.
-     */
-    @Override
-    public boolean equals(Object o) {
-        if (this == o) return true; // check identity
-        if (o instanceof Piece) {
-            return this.symbol == ((Piece) o).symbol;
-        }
-        return false;
-    }
-
     @Override
     public String toString() {
         return "Piece("+symbol+")";
     }
-
-
-}
\ No newline at end of file
+}
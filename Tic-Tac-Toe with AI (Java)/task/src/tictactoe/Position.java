@@ -0,0 +1,180 @@
+package tictactoe;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * An immutable snapshot of a {@link Grid}, given to a {@link Strategy} to choose its move from.
+ * A snapshot never changes after it is taken, so any number of threads can read it at once.
+ */
+public final class Position {
+
+    /**
+     * Private copy of the board, never modified after the constructor.
+     */
+    private final Grid grid;
+
+    /**
+     * Take a snapshot of a board's current pieces.
+     * @param grid board to copy, later changes to it are not seen by the snapshot
+     */
+    public Position(Grid grid) {
+        this.grid = new Grid(grid);
+    }
+
+    /**
+     * Dimensions of the NxN square board.
+     */
+    public int getSize() {
+        return grid.getSize();
+    }
+
+    /**
+     * Number of pieces in a row needed to win.
+     */
+    public int getWinLength() {
+        return grid.getWinLength();
+    }
+
+    /**
+     * Get the symbol at a cell.
+     * @param y row
+     * @param x column
+     * @return 'X', 'O' or ' ' (empty)
+     */
+    public char getSymbol(int y, int x) {
+        return grid.getCell(y, x).getSymbol();
+    }
+
+    /**
+     * Get the board as a string of symbols from left-to-right, top-to-bottom.
+     * @return 'X', 'O' or ' ' (empty) for every cell
+     */
+    public String getSymbols() {
+        return grid.getSymbols();
+    }
+
+    /**
+     * Does a cell have no piece on it?
+     * @param y row
+     * @param x column
+     */
+    public boolean isEmpty(int y, int x) {
+        return grid.getCell(y, x).isEmpty();
+    }
+
+    /**
+     * Get the state of the game.
+     */
+    public Grid.State getState() {
+        return grid.getState();
+    }
+
+    /**
+     * Find the next piece to place on the board, X goes first.
+     * @return current turn's piece, empty if the board is invalid or full
+     */
+    public Optional<Piece> nextPiece() {
+        return grid.nextPiece();
+    }
+
+    /**
+     * Does a cell have no piece on it?
+     * @param index cell position, left-to-right, top-to-bottom
+     */
+    public boolean isEmpty(int index) {
+        return grid.getSymbol(index) == ' ';
+    }
+
+    /**
+     * Count the cells without a piece.
+     */
+    public int getEmptyCount() {
+        return grid.getEmptyCount();
+    }
+
+    /**
+     * Find the next empty cell without allocating, see {@link Grid#nextEmptyCell(int)}.
+     * @param from cell index to start searching from, left-to-right, top-to-bottom
+     * @return index of the first empty cell at or after {@code from}, -1 if there is none
+     */
+    public int nextEmptyCell(int from) {
+        return grid.nextEmptyCell(from);
+    }
+
+    /**
+     * Find the next empty cell that would win the game for a piece without allocating,
+     * see {@link Grid#nextWinMove(int, Piece)}.
+     * @param from cell index to start searching from, left-to-right, top-to-bottom
+     * @param piece 'X' or 'O' piece to place
+     * @return index of the first win move at or after {@code from}, -1 if there is none
+     */
+    public int nextWinMove(int from, Piece piece) {
+        return grid.nextWinMove(from, piece);
+    }
+
+    /**
+     * Fill a list with every empty cell.
+     * @param moves list to clear and fill with cell indexes, left-to-right, top-to-bottom
+     * @return the list
+     */
+    public MoveList getEmptyCells(MoveList moves) {
+        return grid.getEmptyCells(moves);
+    }
+
+    /**
+     * Fill a list with every empty cell that would win the game for a piece.
+     * @param piece 'X' or 'O' piece to place
+     * @param moves list to clear and fill with cell indexes, left-to-right, top-to-bottom
+     * @return the list
+     */
+    public MoveList getWinMoves(Piece piece, MoveList moves) {
+        return grid.getWinMoves(piece, moves);
+    }
+
+    /**
+     * Return a new list of the {y, x} co-ordinates of all empty cells.
+     * Kept for compatibility, {@link #getEmptyCells(MoveList)} fills a reusable list instead.
+     */
+    public List<int[]> getEmptyCells() {
+        return grid.getEmptyCells();
+    }
+
+    /**
+     * Return a new list of the {y, x} co-ordinates that would win the game for a piece.
+     * Kept for compatibility, {@link #getWinMoves(Piece, MoveList)} fills a reusable list instead.
+     * @param piece 'X' or 'O' piece to place
+     */
+    public List<int[]> getWinMoves(Piece piece) {
+        // read from the board's win moves, as caching lists in the shared board would not be thread-safe
+        List<int[]> moves = new ArrayList<>();
+        for (int i = grid.nextWinMove(0, piece); i != -1; i = grid.nextWinMove(i + 1, piece)) {
+            moves.add(grid.toPosition(i));
+        }
+        return moves;
+    }
+
+    /**
+     * Create a new board holding this position, which can be changed without affecting the snapshot.
+     */
+    public Grid toGrid() {
+        return new Grid(grid);
+    }
+
+    /**
+     * Get the snapshot's board without copying it, for engine code that only reads it.
+     * The board must never be modified.
+     */
+    Grid getGrid() {
+        return grid;
+    }
+
+    /**
+     * Create a string representation of the game board.
+     */
+    @Override
+    public String toString() {
+        return grid.toString();
+    }
+}
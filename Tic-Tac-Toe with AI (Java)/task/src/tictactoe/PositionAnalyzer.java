@@ -0,0 +1,325 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * Analyses files of boards, one per line in the format read by {@link Grid#Grid(String)}, e.g. game logs.
+ * The input is memory-mapped a window at a time and each line is read into a reused {@link Grid} without creating
+ * strings or cells, so memory use does not grow with the file. Each board is written to the output with its
+ * {@link Grid.State} and best move, e.g. {@code XO_XO____ UNFINISHED 3 1}, with {@code -} if the game is over.
+ * Lines that are not valid boards are written as {@code line INVALID}.
+ * <p>
+ * Boards with the default rules are looked up in the {@link OpeningBook}, others are searched by {@link Minimax}.
+ */
+public class PositionAnalyzer {
+
+    /**
+     * Bytes of the input mapped at once.
+     */
+    private static final int WINDOW_SIZE = 1 << 26;
+    /**
+     * Bytes of the input copied out of the mapped window at once.
+     */
+    private static final int CHUNK_SIZE = 1 << 16;
+    /**
+     * Bytes of output buffered before they are written.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+    /**
+     * Longest line read as a board, enough for a 32x32 board.
+     */
+    private static final int MAX_LINE_LENGTH = 1024;
+    /**
+     * Longest reply written after a line's board.
+     */
+    private static final int MAX_REPLY_LENGTH = 32;
+    /**
+     * Default longest time to search each board that is not in the book for, in milliseconds.
+     */
+    private static final long DEFAULT_TIME_LIMIT = 100;
+    /**
+     * Name of each game state as written to the output, indexed by ordinal.
+     */
+    private static final byte[][] STATE_NAMES = new byte[Grid.State.values().length][];
+    private static final byte[] INVALID = " INVALID\n".getBytes(StandardCharsets.US_ASCII);
+
+    static {
+        for (Grid.State state : Grid.State.values()) {
+            STATE_NAMES[state.ordinal()] = (" "+state.name()).getBytes(StandardCharsets.US_ASCII);
+        }
+    }
+
+    /**
+     * Longest time to search each board that is not in the book for, in milliseconds.
+     */
+    private final long timeLimit;
+    /**
+     * Reused board for each size of board read so far, indexed by size.
+     */
+    private final Grid[] grids = new Grid[(int) Math.sqrt(MAX_LINE_LENGTH) + 1];
+    /**
+     * Bytes of the window being read.
+     */
+    private final byte[] chunk = new byte[CHUNK_SIZE];
+    /**
+     * Output waiting to be written.
+     */
+    private final ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+    /**
+     * Number of boards analysed.
+     */
+    private long positions;
+    /**
+     * Number of lines that were not valid boards.
+     */
+    private long invalid;
+    /**
+     * Number of input bytes read.
+     */
+    private long bytes;
+
+    /**
+     * Create an analyser searching each board that is not in the book for up to {@value DEFAULT_TIME_LIMIT}ms.
+     */
+    public PositionAnalyzer() {
+        this(DEFAULT_TIME_LIMIT);
+    }
+
+    /**
+     * Create an analyser.
+     * @param timeLimit milliseconds to search each board that is not in the book for,
+     *                  {@link Minimax#UNLIMITED} to always search to the end of the game
+     */
+    public PositionAnalyzer(long timeLimit) {
+        if (timeLimit <= 0) {
+            throw new IllegalArgumentException("Time limit must be positive");
+        }
+        this.timeLimit = timeLimit;
+    }
+
+    /**
+     * Analyse every board in a file, writing the results to another file.
+     * @param input file of boards, one per line
+     * @param output file to create or replace with the results, one line per input line
+     */
+    public void analyze(Path input, Path output) throws IOException {
+        try (FileChannel in = FileChannel.open(input, StandardOpenOption.READ);
+             FileChannel out = FileChannel.open(output, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                     StandardOpenOption.TRUNCATE_EXISTING)) {
+            this.output.clear();
+            long size = in.size();
+            long start = 0;
+            while (start < size) {
+                long length = Math.min(WINDOW_SIZE, size - start);
+                MappedByteBuffer window = in.map(FileChannel.MapMode.READ_ONLY, start, length);
+                boolean isLast = start + length == size;
+                // only read whole lines, the last one in the window is read again from the next window
+                int end = isLast ? (int) length : lastLineEnd(window);
+                if (end == 0) {
+                    throw new IOException("Line at byte "+start+" is longer than "+WINDOW_SIZE+" bytes");
+                }
+                readLines(window, end, out);
+                start += end;
+                bytes += end;
+            }
+            flush(out);
+        }
+    }
+
+    /**
+     * Find where the last whole line of a window ends.
+     * @return index after the last newline, 0 if there is none
+     */
+    private static int lastLineEnd(ByteBuffer window) {
+        for (int i = window.limit() - 1; i >= 0; i--) {
+            if (window.get(i) == '\n') return i + 1;
+        }
+        return 0;
+    }
+
+    /**
+     * Analyse each line of a window, copying it a chunk at a time as reading a mapped buffer byte by byte is slow.
+     * @param end index after the last line to read
+     */
+    private void readLines(ByteBuffer window, int end, FileChannel out) throws IOException {
+        int position = 0;
+        while (position < end) {
+            int length = Math.min(CHUNK_SIZE, end - position);
+            window.get(position, chunk, 0, length);
+            int lineStart = 0;
+            for (int i = 0; i < length; i++) {
+                if (chunk[i] == '\n') {
+                    readLine(lineStart, i, out);
+                    lineStart = i + 1;
+                }
+            }
+            if (position + length == end && lineStart < length) {
+                readLine(lineStart, length, out); // the file does not end with a newline
+                lineStart = length;
+            }
+            if (lineStart == 0) {
+                // the chunk is all one line, which is too long to be a board
+                int lineEnd = position;
+                while (lineEnd < end && window.get(lineEnd) != '\n') {
+                    lineEnd++;
+                }
+                int lineLength = lineEnd - position;
+                if (window.get(lineEnd - 1) == '\r') lineLength--;
+                writeInvalid(window, position, lineLength, out);
+                lineStart = lineEnd + 1 - position;
+            }
+            position += lineStart;
+        }
+    }
+
+    /**
+     * Analyse one line of the {@link #chunk}.
+     * @param start index of the line's first byte
+     * @param end index of the line's newline
+     */
+    private void readLine(int start, int end, FileChannel out) throws IOException {
+        if (end > start && chunk[end - 1] == '\r') end--;
+        int length = end - start;
+        if (length == 0) return;
+        if (output.remaining() < length + MAX_REPLY_LENGTH) flush(out);
+        output.put(chunk, start, length);
+        Grid grid = length <= MAX_LINE_LENGTH ? readGrid(start, length) : null;
+        if (grid == null) {
+            output.put(INVALID);
+            invalid++;
+            return;
+        }
+        Grid.State state = grid.getState();
+        output.put(STATE_NAMES[state.ordinal()]);
+        int move = state == Grid.State.UNFINISHED ? bestMove(grid) : -1;
+        if (move == -1) {
+            output.put((byte) ' ').put((byte) '-');
+        } else {
+            output.put((byte) ' ');
+            putInt(move / grid.getSize() + 1);
+            output.put((byte) ' ');
+            putInt(move % grid.getSize() + 1);
+        }
+        output.put((byte) '\n');
+        positions++;
+    }
+
+    /**
+     * Load a line of the {@link #chunk} into the reused board of its size.
+     * @return board, null if the line is not a valid board
+     */
+    private Grid readGrid(int start, int length) {
+        int size = (int) Math.round(Math.sqrt(length));
+        if (size * size != length) return null;
+        if (grids[size] == null) {
+            grids[size] = new Grid(size, Grid.defaultWinLength(size));
+        }
+        Grid grid = grids[size];
+        try {
+            grid.setSymbols(chunk, start);
+        } catch (NoSuchElementException e) {
+            return null;
+        }
+        // the pieces must have been placed in turn, X first
+        int difference = grid.getPieceCount(Grid.X_PIECE) - grid.getPieceCount(Grid.O_PIECE);
+        return difference == 0 || difference == 1 ? grid : null;
+    }
+
+    /**
+     * Find the best move of an unfinished board.
+     * @return cell index, -1 if there is none
+     */
+    private int bestMove(Grid grid) {
+        int moves = OpeningBook.getInstance().getBestMoves(grid);
+        if (moves != 0) {
+            return Integer.numberOfTrailingZeros(moves);
+        }
+        int[] move = new Minimax(grid, Minimax.Evaluator.OPEN_LINES, timeLimit, Minimax.UNLIMITED).getBestMove();
+        return move == null ? -1 : move[0] * grid.getSize() + move[1];
+    }
+
+    /**
+     * Write a line longer than a chunk, which is too long to be a board, copying it straight from the input.
+     */
+    private void writeInvalid(ByteBuffer window, int start, int length, FileChannel out) throws IOException {
+        for (int i = 0; i < length; i++) {
+            if (!output.hasRemaining()) flush(out);
+            output.put(window.get(start + i));
+        }
+        if (output.remaining() < INVALID.length) flush(out);
+        output.put(INVALID);
+        invalid++;
+    }
+
+    /**
+     * Write a positive number as decimal digits.
+     */
+    private void putInt(int value) {
+        int divisor = 1;
+        while (divisor <= value / 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            output.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    /**
+     * Write the buffered output.
+     */
+    private void flush(FileChannel out) throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            out.write(output);
+        }
+        output.clear();
+    }
+
+    /**
+     * Get the number of boards analysed.
+     */
+    public long getPositionCount() {
+        return positions;
+    }
+
+    /**
+     * Get the number of lines that were not valid boards.
+     */
+    public long getInvalidCount() {
+        return invalid;
+    }
+
+    /**
+     * Get the number of input bytes read.
+     */
+    public long getByteCount() {
+        return bytes;
+    }
+
+    /**
+     * Analyse a file of boards from the command line.
+     * @param args input file, output file and optionally the milliseconds to search each board not in the book
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2 || args.length > 3) {
+            System.err.println("usage: input_file output_file [time_limit_ms]");
+            System.exit(1);
+        }
+        long timeLimit = args.length > 2 ? Long.parseLong(args[2]) : DEFAULT_TIME_LIMIT;
+        PositionAnalyzer analyzer = new PositionAnalyzer(timeLimit);
+        OpeningBook.getInstance(); // load the book before timing the analysis
+        long start = System.nanoTime();
+        analyzer.analyze(Paths.get(args[0]), Paths.get(args[1]));
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.err.printf("%d positions, %d invalid, %.0f positions/s, %.1f MB/s%n", analyzer.getPositionCount(),
+                analyzer.getInvalidCount(), analyzer.getPositionCount() / seconds, analyzer.getByteCount() / seconds / 1e6);
+    }
+}
@@ -0,0 +1,405 @@
+package tictactoe;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.channels.OverlappingFileLockException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.CRC32;
+
+/**
+ * A persistent cache of {@link Minimax} results, memory-mapped from a file so a restarted player finds the moves
+ * searched by earlier runs at lookup speed instead of searching them again.
+ * <p>
+ * Positions are keyed by their canonical Zobrist hash, so every rotation and reflection of a board shares one entry,
+ * and moves are stored as seen on the canonical board. The file is a fixed number of slots with open addressing:
+ * a position is stored in the first free slot of the {@value #PROBES} slots from its hash, replacing the shallowest
+ * search when they are all taken.
+ * <p>
+ * Only settled results, searched to the end of the game or to a forced result, are served as the best move. A search cut
+ * off by its time limit is kept as a hint to search first, and replaced once the position is searched deeper.
+ * <p>
+ * File layout (big-endian): a header of {@link #MAGIC}, {@link #VERSION}, the number of slots and a CRC-32 of those
+ * three ints, followed by 16 bytes per slot. Each slot holds the position's hash XORed with its entry, then the
+ * entry of packed value, best move and search depth, in the same way as a {@link TranspositionTable} slot.
+ * <p>
+ * One process writes the cache at a time, holding a lock on the file, and any others open it read-only. Within a
+ * process, writes are serialized and reads take no lock. A reader that sees a slot mid-write, or a slot left
+ * half-written by a crash, fails the key check and treats it as a miss, so a partially written file is never
+ * trusted. A file whose header is missing or does not match its size is cleared by the next writer.
+ */
+public final class PositionCache implements Closeable {
+
+    /**
+     * First bytes of a cache file, "TTTC".
+     */
+    private static final int MAGIC = 0x54545443;
+    /**
+     * Version of the file layout.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Size of the file header in bytes.
+     */
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    /**
+     * Size of a slot in bytes, the checked key then the entry.
+     */
+    private static final int SLOT_BYTES = 2 * Long.BYTES;
+    /**
+     * Number of consecutive slots a position can be stored in.
+     */
+    static final int PROBES = 4;
+    /**
+     * Most slots a cache file can hold, so the file fits in one mapping.
+     */
+    static final int MAX_SLOTS = 1 << 26;
+    /**
+     * Number of slots of the shared cache unless the {@value #SLOTS_PROPERTY} property sets another, a 16MB file.
+     */
+    static final int DEFAULT_SLOTS = 1 << 20;
+    /**
+     * Returned by {@link #probe(long)} when the position has not been stored.
+     */
+    static final long MISS = 0;
+    /**
+     * Deepest search that can be stored.
+     */
+    static final int MAX_DEPTH = 0xFFFF;
+    /**
+     * System property of the file the shared cache is kept in, the cache is off if it is not set.
+     */
+    private static final String PATH_PROPERTY = "tictactoe.cache";
+    /**
+     * System property to override the number of slots of a new shared cache file.
+     */
+    private static final String SLOTS_PROPERTY = "tictactoe.cache.slots";
+
+    /**
+     * Header and slots of the cache.
+     */
+    private final MappedByteBuffer buffer;
+    /**
+     * Open file, kept to hold the writer's lock.
+     */
+    private final FileChannel channel;
+    /**
+     * Lock held by the process writing the cache, null if this cache is read-only.
+     */
+    private final FileLock lock;
+    /**
+     * Mask to map a hash onto a slot index.
+     */
+    private final int indexMask;
+    /**
+     * Has the cache been closed?
+     */
+    private volatile boolean closed;
+
+    /**
+     * Wrap an open cache file.
+     */
+    private PositionCache(MappedByteBuffer buffer, FileChannel channel, FileLock lock, int slots) {
+        this.buffer = buffer;
+        this.channel = channel;
+        this.lock = lock;
+        this.indexMask = slots - 1;
+    }
+
+    /**
+     * Lazily opens the shared cache on first use.
+     */
+    private static class Holder {
+        private static final PositionCache INSTANCE = openDefault();
+    }
+
+    /**
+     * Get the cache shared by every game, opening it on first use.
+     * @return cache kept in the file set by the {@value #PATH_PROPERTY} property, null if the property is not set or
+     * the file cannot be opened
+     */
+    public static PositionCache getInstance() {
+        return Holder.INSTANCE;
+    }
+
+    /**
+     * Open the file set by the {@value #PATH_PROPERTY} property, flushing it when the JVM exits.
+     */
+    private static PositionCache openDefault() {
+        String property = System.getProperty(PATH_PROPERTY);
+        if (property == null) return null;
+        try {
+            PositionCache cache = open(Paths.get(property), Integer.getInteger(SLOTS_PROPERTY, DEFAULT_SLOTS));
+            Runtime.getRuntime().addShutdownHook(new Thread(cache::flush, "tictactoe-cache-flush"));
+            return cache;
+        } catch (IOException | IllegalStateException | IllegalArgumentException e) {
+            System.err.println("Position cache is off, "+property+" cannot be opened: "+e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Open a cache file, creating it if it does not exist.
+     * The first process to open the file writes it, clearing it first if it is not a valid cache, and later ones
+     * read it until the writer closes it.
+     * @param path file to keep the cache in
+     * @param slots number of slots of a new file, a power of two, an existing valid file keeps its own
+     * @throws IllegalStateException if another process is writing the file and it is not a valid cache yet
+     */
+    public static PositionCache open(Path path, int slots) throws IOException {
+        if (slots < PROBES || slots > MAX_SLOTS || Integer.bitCount(slots) != 1) {
+            throw new IllegalArgumentException("Slots must be a power of two from "+PROBES+" to "+MAX_SLOTS
+                    +", not "+slots);
+        }
+        FileChannel channel = FileChannel.open(path,
+                StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+        try {
+            FileLock lock;
+            try {
+                lock = channel.tryLock();
+            } catch (OverlappingFileLockException e) {
+                lock = null; // this process already writes the file through another channel
+            }
+            int valid = validSlots(channel);
+            if (lock == null) {
+                if (valid == 0) throw new IllegalStateException(path+" is not a valid position cache");
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size());
+                return new PositionCache(buffer, channel, null, valid);
+            }
+            if (valid == 0) {
+                initialize(channel, slots);
+                valid = slots;
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+            return new PositionCache(buffer, channel, lock, valid);
+        } catch (IOException | RuntimeException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Check the header of a cache file.
+     * @return number of slots in the file, 0 if it is not a complete, valid cache
+     */
+    private static int validSlots(FileChannel channel) throws IOException {
+        if (channel.size() < HEADER_BYTES) return 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (header.hasRemaining()) {
+            if (channel.read(header, header.position()) < 0) return 0;
+        }
+        int slots = header.getInt(8);
+        if (header.getInt(0) != MAGIC
+                || header.getInt(4) != VERSION
+                || header.getInt(12) != checksum(header)
+                || slots < PROBES || slots > MAX_SLOTS || Integer.bitCount(slots) != 1
+                || channel.size() != HEADER_BYTES + (long) slots * SLOT_BYTES) {
+            return 0;
+        }
+        return slots;
+    }
+
+    /**
+     * Clear a file and lay out an empty cache in it.
+     * The header is written and forced to disk last, so a crash while clearing leaves a file that is not valid,
+     * and is cleared again, rather than one whose slots hold whatever was there before.
+     */
+    private static void initialize(FileChannel channel, int slots) throws IOException {
+        channel.truncate(0);
+        long size = HEADER_BYTES + (long) slots * SLOT_BYTES;
+        channel.write(ByteBuffer.allocate(1), size - 1); // extend the file, reading back as zeros (empty slots)
+        channel.force(false);
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(0, MAGIC).putInt(4, VERSION).putInt(8, slots);
+        header.putInt(12, checksum(header));
+        while (header.hasRemaining()) {
+            channel.write(header, header.position());
+        }
+        channel.force(true);
+    }
+
+    /**
+     * CRC-32 of the first three ints of a header.
+     */
+    private static int checksum(ByteBuffer header) {
+        CRC32 crc = new CRC32();
+        crc.update(header.duplicate().position(0).limit(12));
+        return (int) crc.getValue();
+    }
+
+    /**
+     * Find the byte offset of a slot.
+     */
+    private int offset(int slot) {
+        return HEADER_BYTES + slot * SLOT_BYTES;
+    }
+
+    /**
+     * Find the first slot a hash can be stored in.
+     */
+    private int index(long key) {
+        return (int) (key ^ (key >>> 32)) & indexMask;
+    }
+
+    /**
+     * Look up a position by its canonical hash.
+     * @param key canonical Zobrist hash of the position
+     * @return packed entry, {@link #MISS} if the position is not in the cache
+     */
+    long probe(long key) {
+        int slot = index(key);
+        for (int i = 0; i < PROBES; i++, slot = (slot + 1) & indexMask) {
+            int offset = offset(slot);
+            long entry = buffer.getLong(offset + Long.BYTES);
+            if (entry == MISS) return MISS; // slots are never emptied, so the position is not further on
+            if ((buffer.getLong(offset) ^ entry) == key) return entry; // another position, or a torn write
+        }
+        return MISS;
+    }
+
+    /**
+     * Get the best move stored for a position, if its search was settled, see {@link #isSettled(long, Grid)}.
+     * A move found by a search cut off early may not be the best, so it is only a hint, see {@link #getHintCell(Grid)}.
+     * @return cell index of the move, left-to-right, top-to-bottom, -1 if the position is not in the cache or its
+     * search was cut off
+     */
+    public int getBestCell(Grid grid) {
+        if (closed) return -1;
+        Symmetry symmetry = grid.getCanonicalSymmetry();
+        long entry = probe(grid.getHash(symmetry));
+        if (entry == MISS || !isSettled(entry, grid)) return -1;
+        return symmetry.inverse().apply(move(entry), grid.getSize());
+    }
+
+    /**
+     * Get the move stored for a position however deep it was searched, to search first when searching it again.
+     * @return cell index of the move, left-to-right, top-to-bottom, -1 if the position is not in the cache
+     */
+    public int getHintCell(Grid grid) {
+        if (closed) return -1;
+        Symmetry symmetry = grid.getCanonicalSymmetry();
+        long entry = probe(grid.getHash(symmetry));
+        if (entry == MISS) return -1;
+        return symmetry.inverse().apply(move(entry), grid.getSize());
+    }
+
+    /**
+     * Store the result of searching a position, replacing any earlier result for it unless that was searched deeper.
+     * Results of read-only or closed caches, and of positions without a move, are not stored.
+     * @param move cell index of the best move, left-to-right, top-to-bottom
+     * @param value value of the position for 'X'
+     * @param depth number of moves searched below the position
+     * @return was the result stored?
+     */
+    public boolean store(Grid grid, int move, int value, int depth) {
+        if (lock == null || move < 0) return false;
+        Symmetry symmetry = grid.getCanonicalSymmetry();
+        long key = grid.getHash(symmetry);
+        long entry = (value & 0xFFFFFFFFL)
+                | ((long) (symmetry.apply(move, grid.getSize()) + 1) << 32)
+                | ((long) Math.min(depth, MAX_DEPTH) << 48);
+        synchronized (this) {
+            if (closed) return false;
+            int victim = -1;
+            int victimDepth = Integer.MAX_VALUE;
+            int slot = index(key);
+            for (int i = 0; i < PROBES; i++, slot = (slot + 1) & indexMask) {
+                int offset = offset(slot);
+                long stored = buffer.getLong(offset + Long.BYTES);
+                if (stored == MISS) {
+                    victim = slot;
+                    break;
+                }
+                if ((buffer.getLong(offset) ^ stored) == key) {
+                    if (depth(stored) > depth(entry)) return false; // keep the deeper search
+                    victim = slot;
+                    break;
+                }
+                if (depth(stored) < victimDepth) {
+                    victim = slot;
+                    victimDepth = depth(stored);
+                }
+            }
+            int offset = offset(victim);
+            buffer.putLong(offset, key ^ entry);
+            buffer.putLong(offset + Long.BYTES, entry);
+        }
+        return true;
+    }
+
+    /**
+     * Store the result of a finished search, see {@link #store(Grid, int, int, int)}.
+     * @param grid position the search was started from
+     */
+    public boolean store(Grid grid, Minimax minimax) {
+        return store(grid, minimax.getBestCell(), minimax.getBestValue(), minimax.getCompletedDepth());
+    }
+
+    /**
+     * Number of slots in the cache.
+     */
+    public int getCapacity() {
+        return indexMask + 1;
+    }
+
+    /**
+     * Can this process store results, or does another process write the file?
+     */
+    public boolean isWritable() {
+        return lock != null && !closed;
+    }
+
+    /**
+     * Write any stored results to disk, so they survive the machine stopping as well as the process.
+     */
+    public synchronized void flush() {
+        if (lock != null && !closed) buffer.force();
+    }
+
+    /**
+     * Flush the cache and release the file, so another process can write it.
+     * The cache returns no results afterwards.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (closed) return;
+        flush();
+        closed = true;
+        channel.close(); // also releases the lock
+    }
+
+    /**
+     * Is a packed entry's move certainly the best, because its search reached the end of the game or found a forced
+     * result? Deeper searches of a settled position cannot change its value.
+     * @param grid position the entry was stored for
+     */
+    static boolean isSettled(long entry, Grid grid) {
+        return depth(entry) >= grid.getEmptyCount() || Minimax.Score.isDecisive(value(entry));
+    }
+
+    /**
+     * Get the value of a packed entry, for 'X'.
+     */
+    static int value(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Get the best move of a packed entry, on the canonical board.
+     */
+    static int move(long entry) {
+        return (int) ((entry >>> 32) & 0xFFFF) - 1;
+    }
+
+    /**
+     * Get the search depth of a packed entry.
+     */
+    static int depth(long entry) {
+        return (int) (entry >>> 48);
+    }
+}
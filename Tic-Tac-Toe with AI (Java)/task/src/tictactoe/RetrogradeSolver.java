@@ -0,0 +1,562 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.NoSuchElementException;
+
+/**
+ * Solves every position of a board by retrograde analysis, building a table of the perfect-play outcome and the
+ * number of moves to the end of the game of each one. Unlike {@link Minimax}, which searches forward from one
+ * position, the solver starts from full boards and works backwards a layer at a time.
+ * <p>
+ * Positions are grouped into layers by their number of pieces, where 'X' has placed half the pieces rounded up
+ * as {@link Grid#nextPiece()} requires. Every move adds a piece, so a layer's positions only lead to the next
+ * layer's, and once that layer is solved one pass over this one reaches the fixed point. Each layer is written to
+ * disk as it is solved, and only the layer after it is memory-mapped while it is solved, so memory use stays
+ * bounded however many positions there are. The layers are then joined into one table file.
+ * <p>
+ * File layout (big-endian): a header of {@link #MAGIC}, {@link #VERSION}, the board size and the win length,
+ * followed by one byte per position, layer by layer from the empty board. Within a layer a position's index ranks
+ * its occupied cells, then which of those hold 'X', in the combinatorial number system. Each entry holds the
+ * {@link Grid.State} reached with perfect play in bits 6-7 and the number of moves until then in bits 0-5, where
+ * the winner wins as fast as possible and the other player holds out as long as possible.
+ */
+public class RetrogradeSolver {
+
+    /**
+     * First bytes of a table file, "TTTD".
+     */
+    private static final int MAGIC = 0x54545444;
+    /**
+     * Version of the file layout.
+     */
+    private static final int VERSION = 1;
+    /**
+     * Size of the file header in bytes.
+     */
+    private static final int HEADER_BYTES = 4 * Integer.BYTES;
+    /**
+     * Most cells a board can have. The table holds a byte for every position, about 10 million for a 4x4 board,
+     * while a 5x5 board has about 1.6 * 10^11 positions, too many to solve or store.
+     */
+    public static final int MAX_CELLS = 16;
+    /**
+     * Bits of an entry holding the number of moves to the end of the game.
+     */
+    private static final int DISTANCE_BITS = 6;
+    private static final int DISTANCE_MASK = (1 << DISTANCE_BITS) - 1;
+    /**
+     * Bytes of a solved layer buffered before they are written.
+     */
+    private static final int OUTPUT_BUFFER_SIZE = 1 << 20;
+    /**
+     * Every game state, indexed by ordinal.
+     */
+    private static final Grid.State[] STATES = Grid.State.values();
+    /**
+     * Number of ways to choose k of n items, indexed by n then k.
+     */
+    private static final long[][] BINOMIALS = new long[MAX_CELLS + 1][MAX_CELLS + 2];
+
+    static {
+        for (int n = 0; n <= MAX_CELLS; n++) {
+            BINOMIALS[n][0] = 1;
+            for (int k = 1; k <= n; k++) {
+                BINOMIALS[n][k] = BINOMIALS[n - 1][k - 1] + BINOMIALS[n - 1][k];
+            }
+        }
+    }
+
+    /**
+     * Dimensions of the square board.
+     */
+    private final int size;
+    /**
+     * Number of pieces in a row needed to win.
+     */
+    private final int winLength;
+    /**
+     * Total number of cells on the board.
+     */
+    private final int cells;
+    /**
+     * Cells of each winning line.
+     */
+    private final long[] lines;
+    /**
+     * Number of positions solved for each outcome, indexed by ordinal.
+     */
+    private final long[] outcomes = new long[STATES.length];
+
+    /**
+     * Create a solver for a board.
+     * @param size dimensions of the square board, with at most {@value MAX_CELLS} cells
+     * @param winLength number of pieces in a row needed to win
+     */
+    public RetrogradeSolver(int size, int winLength) {
+        if (size < 1 || size * size > MAX_CELLS) {
+            throw new IllegalArgumentException("Board must have from 1 to "+MAX_CELLS+" cells");
+        }
+        if (winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("Win length must be from 1 to "+size+", not "+winLength);
+        }
+        this.size = size;
+        this.winLength = winLength;
+        this.cells = size * size;
+        this.lines = Bitboard.lineMasks(size, winLength);
+    }
+
+    /**
+     * Solve every position and write the table to a file, replacing it atomically so readers never see a partial
+     * table. Layers are kept in a temporary directory next to the file until they are joined.
+     */
+    public void solve(Path output) throws IOException {
+        Path parent = output.toAbsolutePath().getParent();
+        Path directory = Files.createTempDirectory(parent, "retrograde");
+        Path[] layers = new Path[cells + 1];
+        Path temp = null;
+        try {
+            for (int pieces = cells; pieces >= 0; pieces--) {
+                layers[pieces] = directory.resolve("layer-"+pieces);
+                Segments next = pieces < cells ? Segments.map(layers[pieces + 1], 0) : null;
+                solveLayer(pieces, next, layers[pieces]);
+            }
+            temp = Files.createTempFile(parent, "tictactoe", ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.WRITE)) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+                header.putInt(MAGIC).putInt(VERSION).putInt(size).putInt(winLength).flip();
+                while (header.hasRemaining()) {
+                    channel.write(header);
+                }
+                for (Path layer : layers) {
+                    try (FileChannel in = FileChannel.open(layer, StandardOpenOption.READ)) {
+                        long position = 0;
+                        while (position < in.size()) {
+                            position += in.transferTo(position, in.size() - position, channel);
+                        }
+                    }
+                    Files.delete(layer); // so the layers and the table are not all on disk at once
+                }
+            }
+            Files.move(temp, output, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            // the table is only left behind if it was moved into place
+            if (temp != null) Files.deleteIfExists(temp);
+            for (Path layer : layers) {
+                if (layer != null) Files.deleteIfExists(layer);
+            }
+            Files.deleteIfExists(directory);
+        }
+    }
+
+    /**
+     * Solve every position of a layer in index order, writing each entry to a file.
+     * @param pieces number of pieces on each of the layer's boards
+     * @param next the solved layer with one more piece, null for full boards
+     */
+    private void solveLayer(int pieces, Segments next, Path file) throws IOException {
+        int xCount = xCount(pieces);
+        boolean xToMove = pieces % 2 == 0;
+        Grid.State win = xToMove ? Grid.State.X_WINS : Grid.State.O_WINS;
+        ByteBuffer output = ByteBuffer.allocateDirect(OUTPUT_BUFFER_SIZE);
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE, StandardOpenOption.CREATE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            // occupied cells then 'X' cells are listed in increasing order, which is the order of their ranks
+            long occupied = (1L << pieces) - 1;
+            while (occupied < 1L << cells) {
+                long xRelative = (1L << xCount) - 1;
+                while (xRelative < 1L << pieces) {
+                    long xs = deposit(xRelative, occupied);
+                    long os = occupied & ~xs;
+                    int entry = solvePosition(xs, os, pieces, win, next);
+                    outcomes[entry >>> DISTANCE_BITS]++;
+                    if (!output.hasRemaining()) flush(output, channel);
+                    output.put((byte) entry);
+                    xRelative = nextSubset(xRelative);
+                }
+                occupied = nextSubset(occupied);
+            }
+            flush(output, channel);
+        }
+    }
+
+    /**
+     * Find the entry of one position, from its own lines or the entries of its moves.
+     * @param win state of the player to move winning
+     */
+    private int solvePosition(long xs, long os, int pieces, Grid.State win, Segments next) {
+        Grid.State state = terminalState(xs, os, pieces);
+        if (state != Grid.State.UNFINISHED) {
+            return entry(state, 0);
+        }
+        int best = 0;
+        boolean xToMove = win == Grid.State.X_WINS;
+        for (long empty = ~(xs | os) & ((1L << cells) - 1); empty != 0; empty &= empty - 1) {
+            long move = empty & -empty;
+            int child = next.get(xToMove ? index(xs | move, os) : index(xs, os | move));
+            if (best == 0 || isBetter(child, best, win)) best = child;
+        }
+        return entry(STATES[best >>> DISTANCE_BITS], (best & DISTANCE_MASK) + 1);
+    }
+
+    /**
+     * Find the state of a position from its lines alone.
+     * @return {@link Grid.State#UNFINISHED} if nobody has won and the board is not full
+     */
+    private Grid.State terminalState(long xs, long os, int pieces) {
+        boolean xLine = hasLine(xs);
+        boolean oLine = hasLine(os);
+        // the player who moved last wins if both have a line, which only happens in unreachable positions
+        if (xLine && (!oLine || pieces % 2 == 1)) return Grid.State.X_WINS;
+        if (oLine) return Grid.State.O_WINS;
+        return pieces == cells ? Grid.State.DRAW : Grid.State.UNFINISHED;
+    }
+
+    /**
+     * Does a set of cells cover a whole winning line?
+     */
+    private boolean hasLine(long bits) {
+        for (long line : lines) {
+            if ((bits & line) == line) return true;
+        }
+        return false;
+    }
+
+    /**
+     * Is one move's entry better than another for the player to move?
+     * Wins beat draws beat losses, faster wins beat slower ones, and slower draws and losses beat faster ones.
+     * @param win state of the player to move winning
+     */
+    private static boolean isBetter(int entry, int best, Grid.State win) {
+        int rank = rank(entry, win);
+        int bestRank = rank(best, win);
+        if (rank != bestRank) return rank > bestRank;
+        int distance = entry & DISTANCE_MASK;
+        int bestDistance = best & DISTANCE_MASK;
+        return rank == 2 ? distance < bestDistance : distance > bestDistance;
+    }
+
+    /**
+     * Rank an entry's outcome for the player to move: 2 for a win, 1 for a draw and 0 for a loss.
+     */
+    private static int rank(int entry, Grid.State win) {
+        Grid.State state = STATES[entry >>> DISTANCE_BITS];
+        return state == win ? 2 : state == Grid.State.DRAW ? 1 : 0;
+    }
+
+    /**
+     * Pack an outcome and the number of moves to reach it into an entry.
+     */
+    private static int entry(Grid.State state, int distance) {
+        return state.ordinal() << DISTANCE_BITS | distance;
+    }
+
+    /**
+     * Number of 'X' pieces on a board with a number of pieces, as 'X' moves first.
+     */
+    private static int xCount(int pieces) {
+        return (pieces + 1) / 2;
+    }
+
+    /**
+     * Number of positions in a layer.
+     */
+    private static long layerSize(int cells, int pieces) {
+        return BINOMIALS[cells][pieces] * BINOMIALS[pieces][xCount(pieces)];
+    }
+
+    /**
+     * Find the index of a position in its layer.
+     * @param xs cells holding 'X'
+     * @param os cells holding 'O'
+     */
+    private static long index(long xs, long os) {
+        long occupied = xs | os;
+        long occupiedRank = 0;
+        long xRank = 0;
+        int j = 0;
+        int xj = 0;
+        for (long bits = occupied; bits != 0; bits &= bits - 1) {
+            int cell = Long.numberOfTrailingZeros(bits);
+            occupiedRank += BINOMIALS[cell][++j];
+            if ((xs >>> cell & 1) != 0) xRank += BINOMIALS[j - 1][++xj];
+        }
+        return occupiedRank * BINOMIALS[j][xCount(j)] + xRank;
+    }
+
+    /**
+     * Get the next larger set with the same number of bits.
+     */
+    private static long nextSubset(long bits) {
+        if (bits == 0) return Long.MAX_VALUE; // the empty set is the only one of its size
+        long lowest = bits & -bits;
+        long ripple = bits + lowest;
+        return (((ripple ^ bits) >>> 2) / lowest) | ripple;
+    }
+
+    /**
+     * Spread the bits of a relative set onto the set bits of another, lowest first.
+     */
+    private static long deposit(long relative, long onto) {
+        long result = 0;
+        for (long bits = onto; relative != 0; bits &= bits - 1, relative >>>= 1) {
+            if ((relative & 1) != 0) result |= bits & -bits;
+        }
+        return result;
+    }
+
+    /**
+     * Write the buffered entries.
+     */
+    private static void flush(ByteBuffer output, FileChannel channel) throws IOException {
+        output.flip();
+        while (output.hasRemaining()) {
+            channel.write(output);
+        }
+        output.clear();
+    }
+
+    /**
+     * Get the number of positions solved with a perfect-play outcome.
+     */
+    public long getPositionCount(Grid.State outcome) {
+        return outcomes[outcome.ordinal()];
+    }
+
+    /**
+     * Get the number of positions solved.
+     */
+    public long getPositionCount() {
+        long total = 0;
+        for (long count : outcomes) {
+            total += count;
+        }
+        return total;
+    }
+
+    /**
+     * A file memory-mapped in segments, so files larger than one buffer can be read by a long index.
+     */
+    private static final class Segments {
+        /**
+         * Bytes of each segment after the first, a power of two.
+         */
+        private static final int SEGMENT_BITS = 30;
+
+        private final MappedByteBuffer[] buffers;
+
+        private Segments(MappedByteBuffer[] buffers) {
+            this.buffers = buffers;
+        }
+
+        /**
+         * Memory-map a file from an offset to its end.
+         */
+        private static Segments map(Path path, long offset) throws IOException {
+            try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+                long length = channel.size() - offset;
+                int count = (int) ((length + (1L << SEGMENT_BITS) - 1) >>> SEGMENT_BITS);
+                MappedByteBuffer[] buffers = new MappedByteBuffer[count];
+                for (int i = 0; i < count; i++) {
+                    long start = (long) i << SEGMENT_BITS;
+                    buffers[i] = channel.map(FileChannel.MapMode.READ_ONLY, offset + start,
+                            Math.min(1L << SEGMENT_BITS, length - start));
+                }
+                return new Segments(buffers);
+            }
+        }
+
+        /**
+         * Read the unsigned byte at an index.
+         */
+        private int get(long index) {
+            return buffers[(int) (index >>> SEGMENT_BITS)].get((int) (index & ((1 << SEGMENT_BITS) - 1))) & 0xFF;
+        }
+
+        /**
+         * Read the int at an index, which must not cross a segment.
+         */
+        private int getInt(int index) {
+            return buffers[0].getInt(index);
+        }
+    }
+
+    /**
+     * A solved table, memory-mapped from the file written by {@link #solve(Path)}.
+     */
+    public static final class Table {
+        private final int size;
+        private final int winLength;
+        private final int cells;
+        private final Segments entries;
+        /**
+         * Index of the first entry of each layer, by number of pieces.
+         */
+        private final long[] layerStarts;
+
+        private Table(int size, int winLength, Segments entries) {
+            this.size = size;
+            this.winLength = winLength;
+            this.cells = size * size;
+            this.entries = entries;
+            this.layerStarts = new long[cells + 2];
+            for (int pieces = 0; pieces <= cells; pieces++) {
+                layerStarts[pieces + 1] = layerStarts[pieces] + layerSize(cells, pieces);
+            }
+        }
+
+        /**
+         * Memory-map a table file.
+         * @throws IllegalStateException if the file is not a valid table
+         */
+        public static Table open(Path path) throws IOException {
+            if (Files.size(path) < HEADER_BYTES) {
+                throw new IllegalStateException(path+" is not a valid retrograde table");
+            }
+            Segments file = Segments.map(path, 0);
+            if (file.getInt(0) != MAGIC || file.getInt(4) != VERSION) {
+                throw new IllegalStateException(path+" is not a valid retrograde table");
+            }
+            int size = file.getInt(8);
+            int winLength = file.getInt(12);
+            if (size < 1 || size * size > MAX_CELLS || winLength < 1 || winLength > size) {
+                throw new IllegalStateException(path+" is not a valid retrograde table");
+            }
+            Table table = new Table(size, winLength, Segments.map(path, HEADER_BYTES));
+            if (Files.size(path) != HEADER_BYTES + table.layerStarts[table.cells + 1]) {
+                throw new IllegalStateException(path+" is not a complete retrograde table");
+            }
+            return table;
+        }
+
+        /**
+         * Dimensions of the square board the table was solved for.
+         */
+        public int getSize() {
+            return size;
+        }
+
+        /**
+         * Number of pieces in a row needed to win on the board the table was solved for.
+         */
+        public int getWinLength() {
+            return winLength;
+        }
+
+        /**
+         * Find the entry of a position.
+         * @return entry, 0 if the position has other rules or was not placed in turn
+         */
+        private int entry(Grid grid) {
+            if (grid.getSize() != size || grid.getWinLength() != winLength) return 0;
+            long xs = 0;
+            long os = 0;
+            for (int i = 0; i < cells; i++) {
+                switch (grid.getSymbol(i)) {
+                    case 'X' -> xs |= 1L << i;
+                    case 'O' -> os |= 1L << i;
+                }
+            }
+            return entry(xs, os);
+        }
+
+        /**
+         * Find the entry of a position from its pieces.
+         * @return entry, 0 if the pieces were not placed in turn
+         */
+        private int entry(long xs, long os) {
+            int pieces = Long.bitCount(xs | os);
+            if (Long.bitCount(xs) != xCount(pieces)) return 0;
+            return entries.get(layerStarts[pieces] + index(xs, os));
+        }
+
+        /**
+         * Get the result of the game if both players play perfectly from a position.
+         * @return {@link Grid.State#UNPROCESSED} if the position is not in the table
+         */
+        public Grid.State getOutcome(Grid grid) {
+            int entry = entry(grid);
+            return entry != 0 ? STATES[entry >>> DISTANCE_BITS] : Grid.State.UNPROCESSED;
+        }
+
+        /**
+         * Get the number of moves until the game ends if both players play perfectly from a position,
+         * the winner winning as fast as possible.
+         * @return number of moves, -1 if the position is not in the table
+         */
+        public int getDistance(Grid grid) {
+            int entry = entry(grid);
+            return entry != 0 ? entry & DISTANCE_MASK : -1;
+        }
+
+        /**
+         * Get the lowest-indexed move that keeps the perfect-play outcome and distance of a position.
+         * @return cell index of the move, -1 if the game is over or the position is not in the table
+         */
+        public int getBestCell(Grid grid) {
+            if (entry(grid) == 0 || grid.getState() != Grid.State.UNFINISHED) return -1;
+            Piece piece = grid.nextPiece().orElseThrow(NoSuchElementException::new);
+            Grid.State win = piece.getWinState().orElseThrow(NoSuchElementException::new);
+            long xs = 0;
+            long os = 0;
+            for (int i = 0; i < cells; i++) {
+                switch (grid.getSymbol(i)) {
+                    case 'X' -> xs |= 1L << i;
+                    case 'O' -> os |= 1L << i;
+                }
+            }
+            int bestMove = -1;
+            int best = 0;
+            for (int move = grid.nextEmptyCell(0); move != -1; move = grid.nextEmptyCell(move + 1)) {
+                int child = win == Grid.State.X_WINS ? entry(xs | 1L << move, os) : entry(xs, os | 1L << move);
+                if (best == 0 || isBetter(child, best, win)) {
+                    best = child;
+                    bestMove = move;
+                }
+            }
+            return bestMove;
+        }
+
+        /**
+         * Get the co-ordinates of the lowest-indexed move that keeps the perfect-play outcome and distance of a
+         * position, see {@link #getBestCell(Grid)}.
+         * @return {y, x} co-ordinate of the move, null if the game is over or the position is not in the table
+         */
+        public int[] getBestMove(Grid grid) {
+            int move = getBestCell(grid);
+            return move != -1 ? new int[]{move / size, move % size} : null;
+        }
+    }
+
+    /**
+     * Solve every position of a board from the command line and write the table to a file.
+     * @param args board size, win length and table file
+     */
+    public static void main(String[] args) throws IOException {
+        if (args.length != 3) {
+            System.err.println("usage: size win_length output_file");
+            System.exit(1);
+        }
+        int size = Integer.parseInt(args[0]);
+        int winLength = Integer.parseInt(args[1]);
+        Path path = Paths.get(args[2]);
+        RetrogradeSolver solver = new RetrogradeSolver(size, winLength);
+        long start = System.nanoTime();
+        solver.solve(path);
+        double seconds = (System.nanoTime() - start) / 1e9;
+        System.out.printf("%d positions in %.1fs (%.0f positions/s): %d X wins, %d O wins, %d draws%n",
+                solver.getPositionCount(), seconds, solver.getPositionCount() / seconds,
+                solver.getPositionCount(Grid.State.X_WINS), solver.getPositionCount(Grid.State.O_WINS),
+                solver.getPositionCount(Grid.State.DRAW));
+        Grid empty = new Grid(size, winLength);
+        Table table = Table.open(path);
+        System.out.printf("Empty board: %s in %d moves%n", table.getOutcome(empty), table.getDistance(empty));
+    }
+}
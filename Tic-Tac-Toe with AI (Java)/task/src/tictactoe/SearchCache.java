@@ -0,0 +1,403 @@
+package tictactoe;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded in-memory cache of search results, evicting the least recently used position once it is full, so
+ * players on boards too large to solve ahead of time answer positions they have seen recently without searching.
+ * <p>
+ * Positions are keyed by their canonical Zobrist hash, so every rotation and reflection of a board shares one entry,
+ * and results are packed into a long in the same way as a {@link PositionCache} entry. As there, only settled results
+ * are served as the best move, and a search cut off early only gives a move to search first. The cache is split into
+ * segments by hash, each with its own lock and its own recency order, so games on different threads rarely wait for
+ * each other. Each segment stores its entries in primitive arrays, an open-addressed index and an intrusive
+ * doubly-linked list from most to least recently used, so lookups and evictions allocate nothing.
+ */
+public final class SearchCache {
+
+    /**
+     * Approximate memory used by each entry: its key, result and list links, and its share of the index.
+     */
+    public static final int BYTES_PER_ENTRY = 2 * Long.BYTES + 2 * Integer.BYTES + 4 * Integer.BYTES;
+    /**
+     * Returned by {@link #get(long)} when the position is not in the cache.
+     */
+    static final long MISS = 0;
+    /**
+     * Most segments a cache is split into.
+     */
+    private static final int MAX_SEGMENTS = 64;
+
+    /**
+     * Segments of the cache, indexed by the high bits of a hash.
+     */
+    private final Segment[] segments;
+    /**
+     * Mask to map a hash onto a segment index.
+     */
+    private final int segmentMask;
+    /**
+     * Most entries held across every segment.
+     */
+    private final int capacity;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Create an empty cache, split into enough segments for every available core.
+     * @param maxEntries most positions to hold
+     * @param maxBytes most memory to use, approximately, or 0 for no limit besides the number of entries
+     */
+    public SearchCache(long maxEntries, long maxBytes) {
+        this(maxEntries, maxBytes, 4 * Runtime.getRuntime().availableProcessors());
+    }
+
+    /**
+     * Create an empty cache.
+     * @param maxEntries most positions to hold
+     * @param maxBytes most memory to use, approximately, or 0 for no limit besides the number of entries
+     * @param concurrency expected number of threads using the cache at once, rounded up to a power of two segments
+     */
+    SearchCache(long maxEntries, long maxBytes, int concurrency) {
+        if (maxEntries < 1 || maxBytes < 0 || concurrency < 1) {
+            throw new IllegalArgumentException("Cache must hold at least one entry with a concurrency of at least 1");
+        }
+        long entries = maxBytes == 0 ? maxEntries : Math.min(maxEntries, maxBytes / BYTES_PER_ENTRY);
+        if (entries < 1) {
+            throw new IllegalArgumentException(maxBytes+" bytes cannot hold an entry of "+BYTES_PER_ENTRY+" bytes");
+        }
+        this.capacity = (int) Math.min(entries, 1 << 30);
+        // every segment holds at least one entry, so small caches have fewer segments
+        int count = Math.min(Math.min(concurrency, MAX_SEGMENTS), capacity);
+        count = Integer.highestOneBit(count) << (Integer.bitCount(count) > 1 ? 1 : 0);
+        if (count > capacity) count >>= 1;
+        this.segments = new Segment[count];
+        this.segmentMask = count - 1;
+        for (int i = 0; i < count; i++) {
+            // share the capacity out so the segments add up to it exactly
+            segments[i] = new Segment(capacity / count + (i < capacity % count ? 1 : 0));
+        }
+    }
+
+    /**
+     * Find the segment a hash is stored in, from the bits the segment's index does not use.
+     */
+    private Segment segment(long key) {
+        return segments[(int) (key >>> 40) & segmentMask];
+    }
+
+    /**
+     * Look up a position, marking it as the most recently used.
+     * @param key canonical Zobrist hash of the position
+     * @return packed entry, {@link #MISS} if the position is not in the cache
+     */
+    long get(long key) {
+        long entry = segment(key).get(key);
+        if (entry == MISS) {
+            misses.increment();
+        } else {
+            hits.increment();
+        }
+        return entry;
+    }
+
+    /**
+     * Store an entry, replacing any entry for the same position unless that was searched deeper, and evicting the
+     * least recently used position of its segment if the segment is full.
+     * @param key canonical Zobrist hash of the position
+     * @param entry packed entry, not {@link #MISS}
+     */
+    void put(long key, long entry) {
+        if (segment(key).put(key, entry)) evictions.increment();
+    }
+
+    /**
+     * Get the best move stored for a position, if its search was settled, see {@link PositionCache#isSettled}.
+     * Lookups of positions only searched until a time limit count as misses.
+     * @return cell index of the move, left-to-right, top-to-bottom, -1 if the position is not in the cache or its
+     * search was cut off
+     */
+    public int getBestCell(Grid grid) {
+        Symmetry symmetry = grid.getCanonicalSymmetry();
+        long key = grid.getHash(symmetry);
+        long entry = segment(key).get(key);
+        if (entry == MISS || !PositionCache.isSettled(entry, grid)) {
+            misses.increment();
+            return -1;
+        }
+        hits.increment();
+        return symmetry.inverse().apply(PositionCache.move(entry), grid.getSize());
+    }
+
+    /**
+     * Get the move stored for a position however deep it was searched, to search first when searching it again.
+     * @return cell index of the move, left-to-right, top-to-bottom, -1 if the position is not in the cache
+     */
+    public int getHintCell(Grid grid) {
+        Symmetry symmetry = grid.getCanonicalSymmetry();
+        long key = grid.getHash(symmetry);
+        long entry = segment(key).get(key);
+        if (entry == MISS) return -1;
+        return symmetry.inverse().apply(PositionCache.move(entry), grid.getSize());
+    }
+
+    /**
+     * Copy a position's result from a {@link PositionCache}, so later lookups of it do not read the file.
+     */
+    void promote(Grid grid, PositionCache cache) {
+        long key = grid.getCanonicalHash();
+        long entry = cache.probe(key);
+        if (entry != MISS) put(key, entry);
+    }
+
+    /**
+     * Store the result of searching a position, replacing any earlier result for it unless that was searched deeper.
+     * Positions without a move are not stored.
+     * @param move cell index of the best move, left-to-right, top-to-bottom
+     * @param value value of the position for 'X'
+     * @param depth number of moves searched below the position
+     */
+    public void put(Grid grid, int move, int value, int depth) {
+        if (move < 0) return;
+        Symmetry symmetry = grid.getCanonicalSymmetry();
+        long entry = (value & 0xFFFFFFFFL)
+                | ((long) (symmetry.apply(move, grid.getSize()) + 1) << 32)
+                | ((long) Math.min(depth, PositionCache.MAX_DEPTH) << 48);
+        put(grid.getHash(symmetry), entry);
+    }
+
+    /**
+     * Store the result of a finished search, see {@link #put(Grid, int, int, int)}.
+     * @param grid position the search was started from
+     */
+    public void put(Grid grid, Minimax minimax) {
+        put(grid, minimax.getBestCell(), minimax.getBestValue(), minimax.getCompletedDepth());
+    }
+
+    /**
+     * Remove every entry, keeping the counts.
+     */
+    public void clear() {
+        for (Segment segment : segments) {
+            segment.clear();
+        }
+    }
+
+    /**
+     * Most entries the cache holds.
+     */
+    public int getCapacity() {
+        return capacity;
+    }
+
+    /**
+     * Number of entries held, read one segment at a time.
+     */
+    public int getSize() {
+        int size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    /**
+     * Number of segments, each with its own lock.
+     */
+    int getSegmentCount() {
+        return segments.length;
+    }
+
+    /**
+     * Number of lookups that found the position's settled result.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Number of lookups that did not find the position, or found a search cut off early.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Number of positions evicted to make room for another.
+     */
+    public long getEvictionCount() {
+        return evictions.sum();
+    }
+
+    @Override
+    public String toString() {
+        return String.format("SearchCache(size=%d/%d hits=%d misses=%d evictions=%d)",
+                getSize(), capacity, getHitCount(), getMissCount(), getEvictionCount());
+    }
+
+    /**
+     * A fixed-capacity part of the cache, guarded by its own lock.
+     * Entries are numbered nodes, found through a linear-probing index of node numbers and kept in recency order
+     * by a list of node numbers, so nothing is allocated after the segment is created.
+     */
+    private static final class Segment {
+        /**
+         * Ends the recency list.
+         */
+        private static final int NONE = -1;
+        /**
+         * Hash of the position held in each node.
+         */
+        private final long[] keys;
+        /**
+         * Packed result held in each node.
+         */
+        private final long[] entries;
+        /**
+         * Next more and less recently used node of each node.
+         */
+        private final int[] newer;
+        private final int[] older;
+        /**
+         * Node number plus one held in each index slot, 0 for an empty slot.
+         * The index has at least twice as many slots as nodes, so probes stay short.
+         */
+        private final int[] index;
+        /**
+         * Mask to map a hash onto an index slot.
+         */
+        private final int indexMask;
+        /**
+         * Most and least recently used nodes.
+         */
+        private int newest = NONE;
+        private int oldest = NONE;
+        /**
+         * Number of nodes in use, always the first {@code size} node numbers.
+         */
+        private int size;
+
+        Segment(int capacity) {
+            this.keys = new long[capacity];
+            this.entries = new long[capacity];
+            this.newer = new int[capacity];
+            this.older = new int[capacity];
+            this.index = new int[Integer.highestOneBit(capacity) << 2];
+            this.indexMask = index.length - 1;
+        }
+
+        /**
+         * Find the index slot a hash belongs in.
+         */
+        private int home(long key) {
+            return (int) key & indexMask;
+        }
+
+        /**
+         * Find the index slot holding a hash.
+         * @return slot, or -1 if the hash is not in the segment
+         */
+        private int find(long key) {
+            for (int slot = home(key); index[slot] != 0; slot = (slot + 1) & indexMask) {
+                if (keys[index[slot] - 1] == key) return slot;
+            }
+            return -1;
+        }
+
+        synchronized long get(long key) {
+            int slot = find(key);
+            if (slot == -1) return MISS;
+            int node = index[slot] - 1;
+            moveToNewest(node);
+            return entries[node];
+        }
+
+        /**
+         * Store an entry.
+         * @return was another position evicted to make room?
+         */
+        synchronized boolean put(long key, long entry) {
+            int slot = find(key);
+            if (slot != -1) {
+                int node = index[slot] - 1;
+                // keep the deeper search
+                if (PositionCache.depth(entries[node]) <= PositionCache.depth(entry)) entries[node] = entry;
+                moveToNewest(node);
+                return false;
+            }
+            boolean evicted = size == keys.length;
+            int node;
+            if (evicted) {
+                node = oldest;
+                removeFromIndex(find(keys[node]));
+                unlink(node);
+            } else {
+                node = size++;
+            }
+            keys[node] = key;
+            entries[node] = entry;
+            slot = home(key);
+            while (index[slot] != 0) {
+                slot = (slot + 1) & indexMask;
+            }
+            index[slot] = node + 1;
+            linkNewest(node);
+            return evicted;
+        }
+
+        /**
+         * Empty an index slot, shifting back any later entries of the same run that would no longer be found.
+         */
+        private void removeFromIndex(int hole) {
+            for (int slot = (hole + 1) & indexMask; index[slot] != 0; slot = (slot + 1) & indexMask) {
+                int home = home(keys[index[slot] - 1]);
+                // the entry can fill the hole if the hole is between its home slot and where it is now
+                if (((slot - home) & indexMask) >= ((slot - hole) & indexMask)) {
+                    index[hole] = index[slot];
+                    hole = slot;
+                }
+            }
+            index[hole] = 0;
+        }
+
+        /**
+         * Make a node the most recently used.
+         */
+        private void moveToNewest(int node) {
+            if (node == newest) return;
+            unlink(node);
+            linkNewest(node);
+        }
+
+        /**
+         * Remove a node from the recency list.
+         */
+        private void unlink(int node) {
+            if (newer[node] == NONE) newest = older[node]; else older[newer[node]] = older[node];
+            if (older[node] == NONE) oldest = newer[node]; else newer[older[node]] = newer[node];
+        }
+
+        /**
+         * Add a node to the most recently used end of the recency list.
+         */
+        private void linkNewest(int node) {
+            newer[node] = NONE;
+            older[node] = newest;
+            if (newest == NONE) oldest = node; else newer[newest] = node;
+            newest = node;
+        }
+
+        synchronized int size() {
+            return size;
+        }
+
+        synchronized void clear() {
+            Arrays.fill(index, 0);
+            newest = NONE;
+            oldest = NONE;
+            size = 0;
+        }
+    }
+}
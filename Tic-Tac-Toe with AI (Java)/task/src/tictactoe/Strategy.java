@@ -1,25 +1,39 @@
 package tictactoe;
 
+import java.util.random.RandomGenerator;
+
 /**
  * An algorithm to generate a player's move.
+ * Strategies hold no game state, so a single instance can choose moves for any number of games at once.
  */
 public abstract class Strategy {
 
+    /**
+     * System property setting the number of threads a searching Strategy uses for one move.
+     */
+    private static final String PARALLELISM_PROPERTY = "tictactoe.search.parallelism";
+    /**
+     * Number of threads a searching Strategy uses for one move unless its game sets another, every available core
+     * unless the {@value #PARALLELISM_PROPERTY} system property sets another.
+     */
+    public static final int DEFAULT_PARALLELISM =
+            Math.max(1, Integer.getInteger(PARALLELISM_PROPERTY, Runtime.getRuntime().availableProcessors()));
+
     /**
      * Name of the Strategy.
      */
     private final String name;
     /**
-     * Current state of the game.
+     * Time and work spent on every move, shared by every Strategy with this name.
      */
-    protected final Grid grid;
+    private final StrategyMetrics metrics;
 
     /**
-     * Set the Strategy's name and grid to apply the move to.
+     * Set the Strategy's name.
      */
-    public Strategy(String name, Grid grid) {
+    public Strategy(String name) {
         this.name = name;
-        this.grid = grid;
+        this.metrics = StrategyMetrics.forStrategy(name);
     }
 
     /**
@@ -29,10 +43,39 @@ public abstract class Strategy {
         System.out.println("Making move level \""+name+"\"");
     }
 
+    /**
+     * Get the metrics of every move this Strategy has chosen.
+     */
+    StrategyMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * Find the location of the best move for a piece, recording the time taken in the Strategy's metrics
+     * unless they are turned off, and in a flight recording if it is enabled.
+     * @param position snapshot of the board to move on
+     * @param toPlace piece to place on the board
+     * @param random source of random choices, only used by the calling thread
+     * @param parallelism most threads to search with, 1 to search on the calling thread
+     * @return cell index of the move to make, left-to-right, top-to-bottom
+     */
+    final int execute(Position position, Piece toPlace, RandomGenerator random, int parallelism) {
+        GameEvents.Move event = new GameEvents.Move();
+        event.begin();
+        long start = StrategyMetrics.ENABLED ? System.nanoTime() : 0;
+        int move = findMove(position, toPlace, random, parallelism);
+        if (StrategyMetrics.ENABLED) metrics.recordMove(System.nanoTime() - start);
+        event.commitMove(name, position, toPlace, move);
+        return move;
+    }
+
     /**
      * Find the location of the best move for a piece.
+     * @param position snapshot of the board to move on
      * @param toPlace piece to place on the board
-     * @return co-ordinate of move to make
+     * @param random source of random choices, only used by the calling thread
+     * @param parallelism most threads to search with, 1 to search on the calling thread
+     * @return cell index of the move to make, left-to-right, top-to-bottom
      */
-    abstract int[] execute(Piece toPlace);
+    abstract int findMove(Position position, Piece toPlace, RandomGenerator random, int parallelism);
 }
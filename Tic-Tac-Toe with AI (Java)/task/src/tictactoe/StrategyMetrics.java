@@ -0,0 +1,311 @@
+package tictactoe;
+
+import java.io.PrintStream;
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+import javax.management.JMException;
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+
+/**
+ * Counts what each {@link Strategy} spends on its moves: how long each move takes, and for searching strategies the
+ * boards searched, cutoffs, search depth, table and book hits, recent result cache hits, misses and evictions, and
+ * playouts.
+ * Recording only adds to striped counters and a {@link LatencyHistogram}, so any number of games can record at once
+ * without locking and the metrics can stay on in production.
+ * <p>
+ * Metrics are registered as MBeans when the {@value JMX_PROPERTY} system property is true, and printed to standard
+ * error every {@value INTERVAL_PROPERTY} milliseconds when that property is set. Timing a move reads the clock
+ * twice, which costs more than recording, so setting {@value ENABLED_PROPERTY} to false turns it off for the
+ * cheapest players.
+ */
+public class StrategyMetrics implements StrategyMetricsMBean {
+
+    /**
+     * System property that turns move timing off when false.
+     */
+    private static final String ENABLED_PROPERTY = "tictactoe.metrics";
+    /**
+     * Are moves timed and recorded? Constant so the check costs nothing when compiled.
+     */
+    static final boolean ENABLED = !"false".equalsIgnoreCase(System.getProperty(ENABLED_PROPERTY));
+    /**
+     * System property that registers every strategy's metrics as an MBean.
+     */
+    private static final String JMX_PROPERTY = "tictactoe.metrics.jmx";
+    /**
+     * System property setting the milliseconds between printed reports.
+     */
+    private static final String INTERVAL_PROPERTY = "tictactoe.metrics.interval";
+    /**
+     * Metrics of every strategy, by name, in name order.
+     */
+    private static final Map<String, StrategyMetrics> ALL = new ConcurrentSkipListMap<>();
+    /**
+     * Are metrics registered as MBeans as they are created?
+     */
+    private static volatile boolean registerMBeans;
+
+    static {
+        if (Boolean.getBoolean(JMX_PROPERTY)) registerMBeans();
+        Long interval = Long.getLong(INTERVAL_PROPERTY);
+        if (interval != null) startReports(interval, System.err);
+    }
+
+    private final String name;
+    /**
+     * Time taken to choose each move.
+     */
+    private final LatencyHistogram latency = new LatencyHistogram();
+    private final LongAdder moves = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private final LongAdder nodes = new LongAdder();
+    private final LongAdder cutoffs = new LongAdder();
+    private final LongAdder probes = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder bookHits = new LongAdder();
+    private final LongAdder cacheHits = new LongAdder();
+    private final LongAdder playouts = new LongAdder();
+    private final LongAccumulator maxDepth = new LongAccumulator(Math::max, 0);
+    /**
+     * Recent results kept by the strategy, null if it keeps none.
+     */
+    private volatile SearchCache searchCache;
+
+    private StrategyMetrics(String name) {
+        this.name = name;
+    }
+
+    /**
+     * Get the metrics of a strategy, creating them the first time its name is seen.
+     * Strategies with the same name share their metrics.
+     */
+    static StrategyMetrics forStrategy(String name) {
+        return ALL.computeIfAbsent(name, key -> {
+            StrategyMetrics metrics = new StrategyMetrics(key);
+            if (registerMBeans) metrics.register();
+            return metrics;
+        });
+    }
+
+    /**
+     * Register the metrics of every strategy as MBeans, now and as more strategies are created.
+     */
+    public static synchronized void registerMBeans() {
+        if (registerMBeans) return;
+        registerMBeans = true;
+        for (StrategyMetrics metrics : ALL.values()) {
+            metrics.register();
+        }
+    }
+
+    /**
+     * Register these metrics with the platform MBean server, unless they already are.
+     */
+    private void register() {
+        try {
+            MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+            ObjectName objectName = new ObjectName("tictactoe:type=Strategy,name="+name);
+            if (!server.isRegistered(objectName)) server.registerMBean(this, objectName);
+        } catch (JMException e) {
+            System.err.println("Cannot register metrics of "+name+": "+e.getMessage());
+        }
+    }
+
+    /**
+     * Print a report of every strategy's metrics at a fixed rate, on a daemon thread.
+     * @param intervalMillis milliseconds between reports
+     * @param out where to print each report
+     */
+    public static void startReports(long intervalMillis, PrintStream out) {
+        if (intervalMillis <= 0) {
+            throw new IllegalArgumentException("Report interval must be positive");
+        }
+        ScheduledExecutorService reporter = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "strategy-metrics");
+            thread.setDaemon(true);
+            return thread;
+        });
+        reporter.scheduleAtFixedRate(() -> out.print(report()), intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Describe the metrics of every strategy that has chosen a move, one line each.
+     */
+    public static String report() {
+        StringBuilder report = new StringBuilder();
+        for (StrategyMetrics metrics : ALL.values()) {
+            if (metrics.getMoveCount() > 0) report.append(metrics).append(System.lineSeparator());
+        }
+        return report.toString();
+    }
+
+    /**
+     * Count a move chosen by the strategy.
+     * @param nanos time taken to choose it
+     */
+    void recordMove(long nanos) {
+        latency.record(nanos);
+        moves.increment();
+        totalNanos.add(nanos);
+    }
+
+    /**
+     * Count the work of a finished search.
+     */
+    void recordSearch(Minimax minimax) {
+        nodes.add(minimax.getNodeCount());
+        cutoffs.add(minimax.getCutoffCount());
+        probes.add(minimax.getTableProbeCount());
+        hits.add(minimax.getTableHitCount());
+        maxDepth.accumulate(minimax.getCompletedDepth());
+    }
+
+    /**
+     * Count the playouts of a finished search.
+     */
+    void recordSearch(MonteCarlo search) {
+        playouts.add(search.getPlayoutCount());
+    }
+
+    /**
+     * Count a move found in the opening book.
+     */
+    void recordBookHit() {
+        bookHits.increment();
+    }
+
+    /**
+     * Report the counts of the cache the strategy keeps its recent results in.
+     */
+    void setSearchCache(SearchCache searchCache) {
+        this.searchCache = searchCache;
+    }
+
+    /**
+     * Count a move found in the persistent position cache.
+     */
+    void recordCacheHit() {
+        cacheHits.increment();
+    }
+
+    @Override
+    public String getName() {
+        return name;
+    }
+
+    @Override
+    public long getMoveCount() {
+        return moves.sum();
+    }
+
+    @Override
+    public double getMeanLatencyMicros() {
+        long count = moves.sum();
+        return count == 0 ? 0 : totalNanos.sum() / 1e3 / count;
+    }
+
+    @Override
+    public double getLatencyP50Micros() {
+        return latency.percentile(50) / 1e3;
+    }
+
+    @Override
+    public double getLatencyP99Micros() {
+        return latency.percentile(99) / 1e3;
+    }
+
+    @Override
+    public double getLatencyMaxMicros() {
+        return latency.percentile(100) / 1e3;
+    }
+
+    @Override
+    public long getNodeCount() {
+        return nodes.sum();
+    }
+
+    @Override
+    public long getCutoffCount() {
+        return cutoffs.sum();
+    }
+
+    @Override
+    public int getMaxDepth() {
+        return (int) maxDepth.get();
+    }
+
+    @Override
+    public double getTableHitRate() {
+        long count = probes.sum();
+        return count == 0 ? 0 : (double) hits.sum() / count;
+    }
+
+    @Override
+    public long getBookHitCount() {
+        return bookHits.sum();
+    }
+
+    @Override
+    public long getCacheHitCount() {
+        return cacheHits.sum();
+    }
+
+    @Override
+    public long getSearchCacheHitCount() {
+        SearchCache cache = searchCache;
+        return cache == null ? 0 : cache.getHitCount();
+    }
+
+    @Override
+    public long getSearchCacheMissCount() {
+        SearchCache cache = searchCache;
+        return cache == null ? 0 : cache.getMissCount();
+    }
+
+    @Override
+    public long getSearchCacheEvictionCount() {
+        SearchCache cache = searchCache;
+        return cache == null ? 0 : cache.getEvictionCount();
+    }
+
+    @Override
+    public int getSearchCacheSize() {
+        SearchCache cache = searchCache;
+        return cache == null ? 0 : cache.getSize();
+    }
+
+    @Override
+    public long getPlayoutCount() {
+        return playouts.sum();
+    }
+
+    /**
+     * Describe the metrics on one line, only including the counts the strategy uses.
+     */
+    @Override
+    public String toString() {
+        StringBuilder line = new StringBuilder(String.format("%s: moves=%d mean=%.1fus p50=%.1fus p99=%.1fus max=%.1fus",
+                name, getMoveCount(), getMeanLatencyMicros(), getLatencyP50Micros(), getLatencyP99Micros(),
+                getLatencyMaxMicros()));
+        if (getBookHitCount() > 0) line.append(" book=").append(getBookHitCount());
+        if (getCacheHitCount() > 0) line.append(" cache=").append(getCacheHitCount());
+        if (getSearchCacheHitCount() + getSearchCacheMissCount() > 0) {
+            line.append(String.format(" results=%d hits=%d misses=%d evictions=%d", getSearchCacheSize(),
+                    getSearchCacheHitCount(), getSearchCacheMissCount(), getSearchCacheEvictionCount()));
+        }
+        if (getNodeCount() > 0) {
+            line.append(String.format(" nodes=%d cutoffs=%d depth=%d table=%.1f%%", getNodeCount(), getCutoffCount(),
+                    getMaxDepth(), getTableHitRate() * 100));
+        }
+        if (getPlayoutCount() > 0) line.append(" playouts=").append(getPlayoutCount());
+        return line.toString();
+    }
+}
@@ -0,0 +1,93 @@
+package tictactoe;
+
+/**
+ * Management interface of {@link StrategyMetrics}, one MBean per strategy under
+ * {@code tictactoe:type=Strategy,name=<strategy>}.
+ */
+public interface StrategyMetricsMBean {
+
+    /**
+     * Name of the strategy measured.
+     */
+    String getName();
+
+    /**
+     * Number of moves chosen.
+     */
+    long getMoveCount();
+
+    /**
+     * Mean time taken to choose a move, in microseconds.
+     */
+    double getMeanLatencyMicros();
+
+    /**
+     * Median time taken to choose a move, in microseconds.
+     */
+    double getLatencyP50Micros();
+
+    /**
+     * 99th percentile of the time taken to choose a move, in microseconds.
+     */
+    double getLatencyP99Micros();
+
+    /**
+     * Longest time taken to choose a move, in microseconds, to the histogram's precision.
+     */
+    double getLatencyMaxMicros();
+
+    /**
+     * Number of boards searched by {@link Minimax}.
+     */
+    long getNodeCount();
+
+    /**
+     * Number of boards whose remaining moves were skipped by an alpha-beta cutoff.
+     */
+    long getCutoffCount();
+
+    /**
+     * Deepest iteration completed by any search.
+     */
+    int getMaxDepth();
+
+    /**
+     * Fraction of transposition table lookups that found the board, from 0 to 1.
+     */
+    double getTableHitRate();
+
+    /**
+     * Number of moves found in the {@link OpeningBook} without searching.
+     */
+    long getBookHitCount();
+
+    /**
+     * Number of moves found in the {@link PositionCache} without searching.
+     */
+    long getCacheHitCount();
+
+    /**
+     * Number of moves found in the strategy's {@link SearchCache} of recent results.
+     */
+    long getSearchCacheHitCount();
+
+    /**
+     * Number of lookups in the strategy's {@link SearchCache} that had to search instead.
+     */
+    long getSearchCacheMissCount();
+
+    /**
+     * Number of results evicted from the strategy's {@link SearchCache} to make room for newer ones.
+     */
+    long getSearchCacheEvictionCount();
+
+    /**
+     * Number of results held in the strategy's {@link SearchCache}.
+     */
+    int getSearchCacheSize();
+
+    /**
+     * Number of games played out by {@link MonteCarlo} searches.
+     */
+    long getPlayoutCount();
+}
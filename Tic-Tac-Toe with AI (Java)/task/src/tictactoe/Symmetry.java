@@ -0,0 +1,65 @@
+package tictactoe;
+
+/**
+ * The eight rotations and reflections of a square grid.
+ * Boards that are transformed copies of each other have the same best moves, once mapped to the same orientation.
+ */
+public enum Symmetry {
+    IDENTITY,
+    ROTATE_90,
+    ROTATE_180,
+    ROTATE_270,
+    REFLECT_HORIZONTAL, // mirror left to right
+    REFLECT_VERTICAL, // mirror top to bottom
+    TRANSPOSE, // mirror along the top-left to bottom-right diagonal
+    ANTI_TRANSPOSE; // mirror along the bottom-left to top-right diagonal
+
+    /**
+     * Every symmetry, indexed by ordinal.
+     */
+    static final Symmetry[] ALL = values();
+
+    /**
+     * Find where a cell ends up after the board is transformed.
+     * @param index cell position, left-to-right, top-to-bottom
+     * @param size dimensions of the NxN board
+     * @return transformed cell position
+     */
+    public int apply(int index, int size) {
+        int y = index / size;
+        int x = index % size;
+        int last = size - 1;
+        return switch (this) {
+            case IDENTITY -> index;
+            case ROTATE_90 -> x * size + (last - y);
+            case ROTATE_180 -> (last - y) * size + (last - x);
+            case ROTATE_270 -> (last - x) * size + y;
+            case REFLECT_HORIZONTAL -> y * size + (last - x);
+            case REFLECT_VERTICAL -> (last - y) * size + x;
+            case TRANSPOSE -> x * size + y;
+            case ANTI_TRANSPOSE -> (last - x) * size + (last - y);
+        };
+    }
+
+    /**
+     * Find where a cell ends up after the board is transformed.
+     * @param position {y, x} co-ordinate of cell
+     * @param size dimensions of the NxN board
+     * @return transformed {y, x} co-ordinate
+     */
+    public int[] apply(int[] position, int size) {
+        int index = apply(position[0] * size + position[1], size);
+        return new int[]{index / size, index % size};
+    }
+
+    /**
+     * Get the transform that undoes this one.
+     */
+    public Symmetry inverse() {
+        return switch (this) {
+            case ROTATE_90 -> ROTATE_270;
+            case ROTATE_270 -> ROTATE_90;
+            default -> this; // every other transform undoes itself
+        };
+    }
+}
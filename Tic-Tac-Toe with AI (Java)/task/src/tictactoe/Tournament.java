@@ -0,0 +1,343 @@
+package tictactoe;
+
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.SplittableRandom;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import tictactoe.Menu.Player;
+
+/**
+ * Plays many games between two computer players without any console output, spread over several threads,
+ * e.g. to check a change has not weakened an AI or to put the engine under load.
+ */
+public class Tournament {
+
+    /**
+     * Number of games a worker claims at a time.
+     */
+    private static final int BATCH_SIZE = 256;
+    /**
+     * Usage of the command line arguments.
+     */
+    private static final String USAGE =
+            "usage: player_X_mode player_O_mode games [size [win_length [threads [archive_file]]]]";
+
+    private final Player playerX;
+    private final Player playerO;
+    /**
+     * Dimensions of the NxN board.
+     */
+    private final int size;
+    /**
+     * Number of pieces in a row needed to win.
+     */
+    private final int winLength;
+    /**
+     * Records every game, null to not record them.
+     */
+    private GameArchive.Writer archive;
+
+    /**
+     * Set up a tournament between two computer players.
+     * @param playerX ai strategy to control X
+     * @param playerO ai strategy to control O
+     * @param size dimensions of the square board
+     * @param winLength number of pieces in a row needed to win
+     */
+    public Tournament(Player playerX, Player playerO, int size, int winLength) {
+        if (playerX == Player.USER || playerO == Player.USER) {
+            throw new IllegalArgumentException("A tournament can only be played between computer players");
+        }
+        if (size < 1) {
+            throw new IllegalArgumentException("Board size must be positive");
+        }
+        if (winLength < 1 || winLength > size) {
+            throw new IllegalArgumentException("Win length must be from 1 to "+size+", not "+winLength);
+        }
+        this.playerX = playerX;
+        this.playerO = playerO;
+        this.size = size;
+        this.winLength = winLength;
+    }
+
+    /**
+     * Append every game played from now on to an archive.
+     * @param archive writer to record games with, null to stop recording them
+     */
+    public void setArchive(GameArchive.Writer archive) {
+        this.archive = archive;
+    }
+
+    /**
+     * Play every game and gather the results.
+     * Games played at once share the cores, so each move is searched with a share of the
+     * {@link Strategy#DEFAULT_PARALLELISM} threads, 1 when there are as many games as cores.
+     * @param games number of games to play
+     * @param threads number of games to play at once
+     * @return combined results of every game
+     */
+    public Summary run(long games, int threads) throws InterruptedException {
+        if (games < 0 || threads < 1) {
+            throw new IllegalArgumentException("Games cannot be negative and threads must be positive");
+        }
+        AtomicLong unclaimed = new AtomicLong(games);
+        SplittableRandom random = new SplittableRandom();
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        int parallelism = Math.max(1, Strategy.DEFAULT_PARALLELISM / threads);
+        long start = System.nanoTime();
+        try {
+            List<Future<Summary>> workers = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                SplittableRandom workerRandom = random.split(); // each worker has its own generator
+                workers.add(pool.submit(() -> playBatches(unclaimed, workerRandom, parallelism)));
+            }
+            Summary total = new Summary(size * size);
+            for (Future<Summary> worker : workers) {
+                total.add(worker.get());
+            }
+            total.elapsedNanos = System.nanoTime() - start;
+            return total;
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("A tournament game failed", e.getCause());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    /**
+     * Keep claiming and playing batches of games until none are left.
+     * @param unclaimed number of games no worker has claimed yet
+     * @param random source of the players' random choices, only used by this worker
+     * @param parallelism most threads to search each move with
+     * @return results of this worker's games
+     */
+    private Summary playBatches(AtomicLong unclaimed, SplittableRandom random, int parallelism) throws IOException {
+        Summary summary = new Summary(size * size);
+        long[] moveNanos = new long[size * size];
+        while (true) {
+            long remaining = unclaimed.getAndAdd(-BATCH_SIZE);
+            if (remaining <= 0) return summary;
+            for (long i = Math.min(remaining, BATCH_SIZE); i > 0; i--) {
+                Game game = new Game(size, winLength, true, random);
+                game.setSearchParallelism(parallelism);
+                Grid.State state = game.play(playerX, playerO, moveNanos);
+                summary.record(state, game.getMoveCount(), moveNanos);
+                if (archive != null) archive.append(game, playerX, playerO);
+            }
+        }
+    }
+
+    /**
+     * Results of a tournament's games.
+     */
+    public static class Summary {
+        private long games;
+        private long xWins;
+        private long oWins;
+        private long draws;
+        /**
+         * Number of games lasting each number of moves.
+         */
+        private final long[] lengths;
+        /**
+         * Number of moves made by 'X' then 'O'.
+         */
+        private final long[] moves = new long[2];
+        /**
+         * Total time taken to choose moves by 'X' then 'O', in nanoseconds.
+         */
+        private final long[] totalNanos = new long[2];
+        /**
+         * Longest time taken to choose a move by 'X' then 'O', in nanoseconds.
+         */
+        private final long[] maxNanos = new long[2];
+        /**
+         * Wall-clock time taken to play every game, in nanoseconds.
+         */
+        private long elapsedNanos;
+
+        /**
+         * @param cells number of cells on the board, the most moves a game can last
+         */
+        private Summary(int cells) {
+            this.lengths = new long[cells + 1];
+        }
+
+        /**
+         * Add the result of a finished game.
+         * @param length number of moves played
+         * @param moveNanos time taken to choose each move, in the order played
+         */
+        private void record(Grid.State state, int length, long[] moveNanos) {
+            games++;
+            switch (state) {
+                case X_WINS -> xWins++;
+                case O_WINS -> oWins++;
+                default -> draws++;
+            }
+            lengths[length]++;
+            for (int i = 0; i < length; i++) {
+                int player = i % 2; // 'X' always moves first
+                moves[player]++;
+                totalNanos[player] += moveNanos[i];
+                maxNanos[player] = Math.max(maxNanos[player], moveNanos[i]);
+            }
+        }
+
+        /**
+         * Merge another worker's results into these.
+         */
+        private void add(Summary other) {
+            games += other.games;
+            xWins += other.xWins;
+            oWins += other.oWins;
+            draws += other.draws;
+            for (int i = 0; i < lengths.length; i++) {
+                lengths[i] += other.lengths[i];
+            }
+            for (int p = 0; p < 2; p++) {
+                moves[p] += other.moves[p];
+                totalNanos[p] += other.totalNanos[p];
+                maxNanos[p] = Math.max(maxNanos[p], other.maxNanos[p]);
+            }
+        }
+
+        public long getGames() {
+            return games;
+        }
+
+        public long getXWins() {
+            return xWins;
+        }
+
+        public long getOWins() {
+            return oWins;
+        }
+
+        public long getDraws() {
+            return draws;
+        }
+
+        /**
+         * Get the number of games lasting a number of moves.
+         */
+        public long getGamesOfLength(int length) {
+            return length < lengths.length ? lengths[length] : 0;
+        }
+
+        /**
+         * Get the mean number of moves per game.
+         */
+        public double getMeanLength() {
+            return games == 0 ? 0 : (double) (moves[0] + moves[1]) / games;
+        }
+
+        /**
+         * Get the mean time a player took to choose a move, in nanoseconds.
+         */
+        public double getMeanMoveNanos(Piece piece) {
+            int p = playerIndex(piece);
+            return moves[p] == 0 ? 0 : (double) totalNanos[p] / moves[p];
+        }
+
+        /**
+         * Get the longest time a player took to choose a move, in nanoseconds.
+         */
+        public long getMaxMoveNanos(Piece piece) {
+            return maxNanos[playerIndex(piece)];
+        }
+
+        /**
+         * Get the wall-clock time taken to play every game, in nanoseconds.
+         */
+        public long getElapsedNanos() {
+            return elapsedNanos;
+        }
+
+        /**
+         * Index of a player's totals, 0 for 'X' and 1 for 'O'.
+         */
+        private static int playerIndex(Piece piece) {
+            return switch (piece.getSymbol()) {
+                case 'X' -> 0;
+                case 'O' -> 1;
+                default -> throw new IllegalArgumentException("Only 'X' and 'O' make moves");
+            };
+        }
+
+        /**
+         * Format a share of the games as a percentage.
+         */
+        private String percent(long count) {
+            return String.format("%.2f%%", games == 0 ? 0 : 100.0 * count / games);
+        }
+
+        /**
+         * Summarise the results as a report, one statistic per line.
+         */
+        @Override
+        public String toString() {
+            StringBuilder report = new StringBuilder();
+            double seconds = elapsedNanos / 1e9;
+            report.append(String.format("Games:    %d in %.2fs (%.0f games/s)%n",
+                    games, seconds, seconds == 0 ? 0 : games / seconds));
+            report.append(String.format("X wins:   %d (%s)%n", xWins, percent(xWins)));
+            report.append(String.format("O wins:   %d (%s)%n", oWins, percent(oWins)));
+            report.append(String.format("Draws:    %d (%s)%n", draws, percent(draws)));
+            report.append(String.format("Length:   mean %.2f moves%n", getMeanLength()));
+            for (int length = 0; length < lengths.length; length++) {
+                if (lengths[length] > 0) {
+                    report.append(String.format("  %3d moves: %d (%s)%n", length, lengths[length], percent(lengths[length])));
+                }
+            }
+            for (Piece piece : new Piece[]{Grid.X_PIECE, Grid.O_PIECE}) {
+                report.append(String.format("%c moves:  %d, mean %.1fus, max %.1fus%n", piece.getSymbol(),
+                        moves[playerIndex(piece)], getMeanMoveNanos(piece) / 1e3, getMaxMoveNanos(piece) / 1e3));
+            }
+            return report.toString();
+        }
+    }
+
+    /**
+     * Play a tournament from the command line and print its summary.
+     * @param args player_X_mode player_O_mode games [size [win_length [threads [archive_file]]]]
+     */
+    public static void main(String[] args) throws InterruptedException, IOException {
+        if (args.length < 3 || args.length > 7) {
+            System.out.println(USAGE);
+            return;
+        }
+        Summary summary;
+        try {
+            Player playerX = Player.valueOf(args[0].toUpperCase());
+            Player playerO = Player.valueOf(args[1].toUpperCase());
+            long games = Long.parseLong(args[2]);
+            int size = args.length > 3 ? Integer.parseInt(args[3]) : Grid.LENGTH;
+            int winLength = args.length > 4 ? Integer.parseInt(args[4]) : Grid.defaultWinLength(size);
+            int threads = args.length > 5 ? Integer.parseInt(args[5]) : Runtime.getRuntime().availableProcessors();
+            Tournament tournament = new Tournament(playerX, playerO, size, winLength);
+            OpeningBook.getInstance(); // load the book before the clock starts
+            System.out.printf("%s (X) vs %s (O) on %dx%d, %d in a row, %d threads%n",
+                    playerX, playerO, size, size, winLength, threads);
+            if (args.length > 6) {
+                try (GameArchive.Writer archive = new GameArchive.Writer(Paths.get(args[6]))) {
+                    tournament.setArchive(archive);
+                    summary = tournament.run(games, threads);
+                }
+            } else {
+                summary = tournament.run(games, threads);
+            }
+        } catch (IllegalArgumentException e) {
+            System.out.println(USAGE);
+            return;
+        }
+        System.out.print(summary);
+    }
+}
@@ -0,0 +1,141 @@
+package tictactoe;
+
+import java.util.Arrays;
+
+/**
+ * Fixed-capacity cache of searched positions, keyed by the Zobrist hash of a {@link Grid}.
+ * Each hash maps to a single slot, and a new entry always replaces whatever was stored in its slot.
+ * Entries record the depth they were searched to, so a search only reuses results of searches to the same depth.
+ * <p>
+ * The table can be shared by concurrent searches without locking. Each slot stores its key XORed with its entry,
+ * so a slot read while another thread is writing it fails the key check and is treated as a miss.
+ */
+class TranspositionTable {
+
+    /**
+     * How a stored value relates to the true value of the position.
+     */
+    enum Bound {
+        EXACT, // the true value
+        LOWER, // the true value is at least this value
+        UPPER  // the true value is at most this value
+    }
+
+    /**
+     * Every bound, indexed by ordinal.
+     */
+    private static final Bound[] BOUNDS = Bound.values();
+    /**
+     * Returned by {@link #probe(long)} when the position has not been stored.
+     */
+    static final long MISS = 0;
+    /**
+     * Stored in place of a move for positions without one.
+     */
+    static final int NO_MOVE = -1;
+    /**
+     * Deepest search that can be stored.
+     */
+    static final int MAX_DEPTH = 0xFFF;
+    /**
+     * Full hash of the position held in each slot, XORed with the slot's entry.
+     */
+    private final long[] keys;
+    /**
+     * Packed value, bound, depth and best move of the position held in each slot.
+     */
+    private final long[] entries;
+    /**
+     * Mask to map a hash onto a slot index.
+     */
+    private final int indexMask;
+
+    /**
+     * Create an empty table.
+     * @param capacity number of slots, must be a power of two
+     */
+    TranspositionTable(int capacity) {
+        if (capacity <= 0 || Integer.bitCount(capacity) != 1) {
+            throw new IllegalArgumentException("Capacity must be a power of two, not "+capacity);
+        }
+        this.keys = new long[capacity];
+        this.entries = new long[capacity];
+        this.indexMask = capacity - 1;
+    }
+
+    /**
+     * Find the slot a hash is stored in.
+     */
+    private int index(long key) {
+        return (int) (key ^ (key >>> 32)) & indexMask;
+    }
+
+    /**
+     * Look up a position.
+     * @param key Zobrist hash of the position
+     * @return packed entry, {@link #MISS} if the position is not in the table
+     */
+    long probe(long key) {
+        int i = index(key);
+        long entry = entries[i];
+        if ((keys[i] ^ entry) != key) return MISS; // another position, or a torn write
+        return entry;
+    }
+
+    /**
+     * Store the result of searching a position, replacing the slot's previous entry.
+     * Searches deeper than {@link #MAX_DEPTH} are not stored.
+     * @param key Zobrist hash of the position
+     * @param value score found by the search
+     * @param bound how the score relates to the true value
+     * @param depth number of moves searched below the position
+     * @param move cell index of the best move, {@link #NO_MOVE} if there is none
+     */
+    void store(long key, int value, Bound bound, int depth, int move) {
+        if (depth > MAX_DEPTH) return;
+        int i = index(key);
+        long entry = (value & 0xFFFFFFFFL)
+                | ((long) (bound.ordinal() + 1) << 32)
+                | ((long) depth << 34)
+                | ((long) (move + 1) << 46);
+        keys[i] = key ^ entry;
+        entries[i] = entry;
+    }
+
+    /**
+     * Remove every entry from the table.
+     */
+    void clear() {
+        Arrays.fill(keys, 0L);
+        Arrays.fill(entries, MISS);
+    }
+
+    /**
+     * Get the score of a packed entry.
+     */
+    static int value(long entry) {
+        return (int) entry;
+    }
+
+    /**
+     * Get the bound of a packed entry.
+     */
+    static Bound bound(long entry) {
+        return BOUNDS[(int) ((entry >>> 32) & 0b11) - 1];
+    }
+
+    /**
+     * Get the search depth of a packed entry.
+     */
+    static int depth(long entry) {
+        return (int) ((entry >>> 34) & 0xFFF);
+    }
+
+    /**
+     * Get the best move of a packed entry.
+     * @return cell index, {@link #NO_MOVE} if there is none
+     */
+    static int move(long entry) {
+        return (int) ((entry >>> 46) & 0xFFFF) - 1;
+    }
+}